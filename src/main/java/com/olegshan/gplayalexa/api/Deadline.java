@@ -0,0 +1,82 @@
+package com.olegshan.gplayalexa.api;
+
+import java.util.Date;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class Deadline {
+    public static final long ALEXA_TIMEOUT_MILLIS   = SECONDS.toMillis(8);
+    static final        long RESPONSE_MARGIN_MILLIS = SECONDS.toMillis(1);
+    static final        long MIN_BUDGET_MILLIS      = 500;
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + MILLISECONDS.toNanos(millis));
+    }
+
+    public static Deadline forRequest(Date timestamp) {
+        return forRequest(timestamp, System.currentTimeMillis());
+    }
+
+    static Deadline forRequest(Date timestamp, long nowMillis) {
+        long budget = ALEXA_TIMEOUT_MILLIS - RESPONSE_MARGIN_MILLIS;
+        if (timestamp != null) {
+            long elapsed = nowMillis - timestamp.getTime();
+            if (elapsed > 0 && elapsed < ALEXA_TIMEOUT_MILLIS)
+                budget = Math.max(budget - elapsed, MIN_BUDGET_MILLIS);
+        }
+        return after(budget);
+    }
+
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public static Runnable propagate(Runnable task) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null)
+            return task;
+        return () -> {
+            try (Scope ignored = deadline.enter()) {
+                task.run();
+            }
+        };
+    }
+
+    public Scope enter() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(previous);
+        };
+    }
+
+    public long remainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    public long remainingMillis() {
+        return NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean expired() {
+        return remainingNanos() <= 0;
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
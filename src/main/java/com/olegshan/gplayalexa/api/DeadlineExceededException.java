@@ -0,0 +1,10 @@
+package com.olegshan.gplayalexa.api;
+
+import java.io.IOException;
+
+public class DeadlineExceededException extends IOException {
+
+    public DeadlineExceededException(String operation) {
+        super(operation + " didn't complete before the request deadline");
+    }
+}
@@ -0,0 +1,212 @@
+package com.olegshan.gplayalexa.api;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.github.felixgail.gplaymusic.util.TokenProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import svarzee.gps.gpsoauth.AuthToken;
+import svarzee.gps.gpsoauth.Gpsoauth;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class GoogleMusicApiProvider implements Supplier<GPlayMusic> {
+    static final long   GOOGLE_TOKEN_LIFETIME_MILLIS = MINUTES.toMillis(60);
+    static final long   TOKEN_EXPIRY_MARGIN_MILLIS   = MINUTES.toMillis(5);
+    static final long   TOKEN_TTL_MILLIS             = GOOGLE_TOKEN_LIFETIME_MILLIS - TOKEN_EXPIRY_MARGIN_MILLIS;
+    static final long   MAX_TOKEN_TTL_MILLIS         = DAYS.toMillis(1);
+    static final long   REFRESH_AHEAD_MILLIS         = MINUTES.toMillis(10);
+    static final long   RETRY_DELAY_MILLIS           = SECONDS.toMillis(5);
+    static final long   MAX_RETRY_DELAY_MILLIS       = MINUTES.toMillis(5);
+    static final String DEFAULT_TOKEN_FILE           = "/tmp/gplay-alexa-token.bin";
+
+    private final TokenStore                       tokenStore;
+    private final TokenSource                      tokenSource;
+    private final Function<AuthToken, GPlayMusic> apiFactory;
+    private final HttpTransport                    transport;
+    private final long                             tokenTtlMillis;
+    private final ScheduledExecutorService         scheduler;
+    private final Object                           loginLock = new Object();
+
+    private volatile GPlayMusic         api;
+    private volatile long               tokenExpiresAt;
+    private          int                failures;
+    private          long               retryAt;
+    private          boolean            refreshing;
+    private          ScheduledFuture<?> scheduledRefresh;
+
+    GoogleMusicApiProvider(TokenStore tokenStore, TokenSource tokenSource, HttpTransport transport,
+                           long tokenTtlMillis) {
+        this(tokenStore, tokenSource, token -> new GPlayMusic.Builder()
+                .setAuthToken(token)
+                .setHttpClientBuilder(transport.newClientBuilder())
+                .build(),
+            transport, tokenTtlMillis, Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "google-auth-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }));
+    }
+
+    GoogleMusicApiProvider(TokenStore tokenStore, TokenSource tokenSource, Function<AuthToken, GPlayMusic> apiFactory,
+                           HttpTransport transport, long tokenTtlMillis, ScheduledExecutorService scheduler) {
+        this.tokenStore = tokenStore;
+        this.tokenSource = tokenSource;
+        this.apiFactory = apiFactory;
+        this.transport = transport;
+        this.tokenTtlMillis = tokenTtlMillis;
+        this.scheduler = scheduler;
+    }
+
+    public static GoogleMusicApiProvider fromEnvironment() {
+        String userName = System.getenv("USER_NAME");
+        String password = System.getenv("USER_PASSWORD");
+        String androidId = System.getenv("IMEI");
+        String tokenFile = System.getenv("TOKEN_CACHE_FILE");
+        String tokenTtl = System.getenv("TOKEN_TTL_MINUTES");
+
+        TokenStore tokenStore = new TokenStore(
+            Paths.get(tokenFile != null && !tokenFile.isEmpty() ? tokenFile : DEFAULT_TOKEN_FILE),
+            password,
+            "gplay-alexa:" + userName + ":" + androidId
+        );
+        return new GoogleMusicApiProvider(
+            tokenStore,
+            () -> TokenProvider.provideToken(userName, password, androidId),
+            HttpTransport.fromEnvironment(),
+            tokenTtl == null || tokenTtl.isEmpty() ? TOKEN_TTL_MILLIS : MINUTES.toMillis(Long.parseLong(tokenTtl))
+        );
+    }
+
+    public GoogleMusicApiProvider start() {
+        try {
+            login(true);
+        } catch (Exception e) {
+            log.error("Error while logging into Google Music, retrying in {} ms", refreshFailed(), e);
+        }
+        transport.warmUp();
+        return this;
+    }
+
+    @Override
+    public GPlayMusic get() {
+        GPlayMusic current = api;
+        if (current == null)
+            return loginNow();
+        if (System.currentTimeMillis() >= tokenExpiresAt)
+            refreshNow();
+        return current;
+    }
+
+    public void onUnauthorized() {
+        log.warn("Google Music rejected the auth token, refreshing it");
+        refreshNow();
+    }
+
+    void refresh() {
+        try {
+            login(false);
+        } catch (Exception e) {
+            log.error("Error while refreshing auth token, retrying in {} ms", refreshFailed(), e);
+        }
+    }
+
+    synchronized int failures() {
+        return failures;
+    }
+
+    private GPlayMusic loginNow() {
+        synchronized (loginLock) {
+            if (api != null)
+                return api;
+            synchronized (this) {
+                if (System.currentTimeMillis() < retryAt)
+                    throw new IllegalStateException("Couldn't log into Google Music, retrying in "
+                        + (retryAt - System.currentTimeMillis()) + " ms");
+            }
+            try {
+                login(true);
+                return api;
+            } catch (IOException | Gpsoauth.TokenRequestFailed e) {
+                throw new IllegalStateException("Couldn't log into Google Music, retrying in "
+                    + refreshFailed() + " ms", e);
+            }
+        }
+    }
+
+    private void login(boolean reuseStoredToken) throws IOException, Gpsoauth.TokenRequestFailed {
+        synchronized (loginLock) {
+            long now = System.currentTimeMillis();
+            TokenStore.StoredToken stored = reuseStoredToken ? tokenStore.load(now) : null;
+
+            AuthToken token;
+            long expiresAt;
+            if (stored != null) {
+                token = new AuthToken(stored.token);
+                expiresAt = stored.expiresAt;
+                log.info("Reusing stored auth token");
+            } else {
+                token = tokenSource.fetch();
+                expiresAt = expiresAt(token, now);
+                tokenStore.save(token.getToken(), expiresAt);
+            }
+
+            api = apiFactory.apply(token);
+            tokenExpiresAt = expiresAt;
+            long lifetime = expiresAt - now;
+            refreshed(lifetime - Math.min(REFRESH_AHEAD_MILLIS, lifetime / 2));
+
+            log.info("Successfully logged into Google Music, token valid for {} ms", lifetime);
+        }
+    }
+
+    private long expiresAt(AuthToken token, long now) {
+        long expiry = SECONDS.toMillis(token.getExpiry()) - TOKEN_EXPIRY_MARGIN_MILLIS;
+        return expiry > now && expiry <= now + MAX_TOKEN_TTL_MILLIS ? expiry : now + tokenTtlMillis;
+    }
+
+    private synchronized void refreshNow() {
+        if (refreshing)
+            return;
+        refreshing = true;
+        scheduleRefresh(0);
+    }
+
+    private synchronized void refreshed(long nextRefreshMillis) {
+        failures = 0;
+        retryAt = 0;
+        refreshing = false;
+        scheduleRefresh(nextRefreshMillis);
+    }
+
+    private synchronized long refreshFailed() {
+        failures++;
+        long delay = Math.min(MAX_RETRY_DELAY_MILLIS, RETRY_DELAY_MILLIS << Math.min(failures - 1, 16));
+        retryAt = System.currentTimeMillis() + delay;
+        refreshing = true;
+        scheduleRefresh(delay);
+        return delay;
+    }
+
+    private synchronized void scheduleRefresh(long delayMillis) {
+        if (scheduledRefresh != null)
+            scheduledRefresh.cancel(false);
+        scheduledRefresh = scheduler.schedule(this::refresh, Math.max(0, delayMillis), MILLISECONDS);
+    }
+
+    interface TokenSource {
+        AuthToken fetch() throws IOException, Gpsoauth.TokenRequestFailed;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(GoogleMusicApiProvider.class);
+}
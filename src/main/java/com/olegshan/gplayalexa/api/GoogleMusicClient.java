@@ -0,0 +1,264 @@
+package com.olegshan.gplayalexa.api;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.github.felixgail.gplaymusic.exceptions.NetworkException;
+import com.github.felixgail.gplaymusic.model.Album;
+import com.github.felixgail.gplaymusic.model.Artist;
+import com.github.felixgail.gplaymusic.model.Track;
+import com.github.felixgail.gplaymusic.model.enums.ResultType;
+import com.github.felixgail.gplaymusic.model.enums.StreamQuality;
+import com.github.felixgail.gplaymusic.model.requests.SearchTypes;
+import com.olegshan.gplayalexa.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class GoogleMusicClient {
+    static final int  MAX_THREADS                = 32;
+    static final long DEFAULT_HEDGE_DELAY_MILLIS = SECONDS.toMillis(1);
+    static final long MIN_HEDGE_DELAY_MILLIS     = 20;
+    static final int  UNAUTHORIZED               = 401;
+    static final int  TOO_MANY_REQUESTS          = 429;
+
+    private static final String STREAM_URL = "GPlayMusic.getStreamURL";
+
+    private final Supplier<GPlayMusic> api;
+    private final Metrics              metrics;
+    private final ExecutorService      executor;
+    private final RateLimiter          limiter;
+    private final AtomicLong           hedges            = new AtomicLong();
+    private final AtomicLong           hedgeWins         = new AtomicLong();
+    private final AtomicLong           deadlinesExceeded = new AtomicLong();
+    private final SingleFlight         flights           = new SingleFlight();
+
+    private final ConcurrentMap<String, RecentLatency> recentLatencies = new ConcurrentHashMap<>();
+
+    public GoogleMusicClient(Supplier<GPlayMusic> api) {
+        this(api, Metrics.metrics());
+    }
+
+    public GoogleMusicClient(Supplier<GPlayMusic> api, Metrics metrics) {
+        this(api, metrics, boundedExecutor(), RateLimiter.fromEnvironment(metrics));
+    }
+
+    GoogleMusicClient(Supplier<GPlayMusic> api, Metrics metrics, ExecutorService executor) {
+        this(api, metrics, executor, new RateLimiter(0, 0, metrics));
+    }
+
+    GoogleMusicClient(Supplier<GPlayMusic> api, Metrics metrics, ExecutorService executor, RateLimiter limiter) {
+        this.api = api;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.limiter = limiter;
+        metrics.counter("GoogleMusicClient", "Hedges", hedges::get);
+        metrics.counter("GoogleMusicClient", "HedgeWins", hedgeWins::get);
+        metrics.counter("GoogleMusicClient", "DeadlinesExceeded", deadlinesExceeded::get);
+        metrics.counter("GoogleMusicClient", "Coalesced", flights::shared);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public List<Track> searchTracks(String query, int maxResults) throws IOException {
+        return coalesced("GPlayMusic.searchTracks", maxResults + "|" + query,
+            () -> api.get().getTrackApi().search(query, maxResults));
+    }
+
+    public List<Album> searchAlbums(String query, int maxResults) throws IOException {
+        return coalesced("GPlayMusic.searchAlbums", maxResults + "|" + query,
+            () -> api.get().search(query, maxResults, new SearchTypes(ResultType.ALBUM)).getAlbums());
+    }
+
+    public List<Artist> searchArtists(String query, int maxResults) throws IOException {
+        return coalesced("GPlayMusic.searchArtists", maxResults + "|" + query,
+            () -> api.get().search(query, maxResults, new SearchTypes(ResultType.ARTIST)).getArtists());
+    }
+
+    public List<Track> getLibraryTracks() throws IOException {
+        return call("GPlayMusic.getLibraryTracks", () -> api.get().getTrackApi().getLibraryTracks());
+    }
+
+    public Artist getArtistWithAlbums(String artistId) throws IOException {
+        return coalesced("GPlayMusic.getArtistWithAlbums", artistId, () -> api.get().getArtist(artistId, true, 0, 0));
+    }
+
+    public Album getAlbum(String albumId) throws IOException {
+        return coalesced("GPlayMusic.getAlbum", albumId, () -> api.get().getAlbum(albumId, true));
+    }
+
+    public Track getTrack(String trackId) throws IOException {
+        return coalesced("GPlayMusic.getTrack", trackId, () -> api.get().getTrackApi().getTrack(trackId));
+    }
+
+    public URL getStreamUrl(Track track) throws IOException {
+        return coalesced(STREAM_URL, track.getID(), () -> track.getStreamURL(StreamQuality.HIGH));
+    }
+
+    long hedges() {
+        return hedges.get();
+    }
+
+    long hedgeWins() {
+        return hedgeWins.get();
+    }
+
+    long deadlinesExceeded() {
+        return deadlinesExceeded.get();
+    }
+
+    long coalesced() {
+        return flights.shared();
+    }
+
+    private <T> T coalesced(String operation, String key, Call<T> call) throws IOException {
+        if (key == null)
+            return call(operation, call);
+        return flights.run(operation + "|" + key, () -> call(operation, call));
+    }
+
+    private <T> T call(String operation, Call<T> call) throws IOException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null)
+            return attempt(operation, null, call);
+        if (deadline.expired())
+            throw deadlineExceeded(operation);
+
+        CompletionService<T> attempts = new ExecutorCompletionService<>(executor);
+        Future<T> first;
+        try {
+            first = attempts.submit(() -> attempt(operation, deadline, call));
+        } catch (RejectedExecutionException e) {
+            return attempt(operation, deadline, call);
+        }
+
+        Future<T> hedge = null;
+        try {
+            Future<T> done = attempts.poll(Math.min(hedgeDelayNanos(operation), deadline.remainingNanos()), NANOSECONDS);
+            if (done == null && !deadline.expired())
+                hedge = hedge(operation, deadline, call, attempts);
+
+            int pending = hedge != null ? 2 : 1;
+            while (true) {
+                if (done == null)
+                    done = attempts.poll(deadline.remainingNanos(), NANOSECONDS);
+                if (done == null)
+                    throw deadlineExceeded(operation);
+                pending--;
+
+                try {
+                    T result = done.get();
+                    if (done == hedge)
+                        hedgeWins.incrementAndGet();
+                    return result;
+                } catch (ExecutionException e) {
+                    if (pending == 0)
+                        throw unwrap(e);
+                    done = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(operation + " was interrupted");
+        } finally {
+            first.cancel(true);
+            if (hedge != null)
+                hedge.cancel(true);
+        }
+    }
+
+    private <T> Future<T> hedge(String operation, Deadline deadline, Call<T> call, CompletionService<T> attempts) {
+        try {
+            Future<T> hedge = attempts.submit(() -> attempt(operation, deadline, call));
+            hedges.incrementAndGet();
+            log.debug("{} is slower than usual, sending a hedged request", operation);
+            return hedge;
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private <T> T attempt(String operation, Deadline deadline, Call<T> call) throws IOException {
+        limiter.acquire(operation, priority(operation, deadline), deadline);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.run();
+            failed = false;
+            limiter.onSuccess();
+            return result;
+        } catch (NetworkException e) {
+            if (e.getCode() == UNAUTHORIZED && api instanceof GoogleMusicApiProvider)
+                ((GoogleMusicApiProvider) api).onUnauthorized();
+            if (e.getCode() != TOO_MANY_REQUESTS && e.getCode() < 500)
+                throw e;
+            limiter.onThrottled();
+            if (e.getCode() == TOO_MANY_REQUESTS)
+                throw new RateLimitedException(operation, e);
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (failed) {
+                metrics.latency(operation, "Outcome", "Failure").record(elapsed);
+            } else {
+                metrics.latency(operation).record(elapsed);
+                recentLatencies.computeIfAbsent(operation, key -> new RecentLatency()).record(elapsed);
+            }
+        }
+    }
+
+    private static RateLimiter.Priority priority(String operation, Deadline deadline) {
+        if (deadline == null)
+            return RateLimiter.Priority.BACKGROUND;
+        return STREAM_URL.equals(operation) ? RateLimiter.Priority.PLAYBACK : RateLimiter.Priority.INTERACTIVE;
+    }
+
+    private long hedgeDelayNanos(String operation) {
+        RecentLatency latency = recentLatencies.get(operation);
+        long percentile = latency != null ? latency.percentileNanos() : -1;
+        if (percentile < 0)
+            return MILLISECONDS.toNanos(DEFAULT_HEDGE_DELAY_MILLIS);
+        return Math.max(percentile, MILLISECONDS.toNanos(MIN_HEDGE_DELAY_MILLIS));
+    }
+
+    private DeadlineExceededException deadlineExceeded(String operation) {
+        deadlinesExceeded.incrementAndGet();
+        return new DeadlineExceededException(operation);
+    }
+
+    static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+            return (IOException) cause;
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        return new IOException(cause);
+    }
+
+    private static ExecutorService boundedExecutor() {
+        return new ThreadPoolExecutor(0, MAX_THREADS, 60, SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "google-music-call");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private interface Call<T> {
+        T run() throws IOException;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(GoogleMusicClient.class);
+}
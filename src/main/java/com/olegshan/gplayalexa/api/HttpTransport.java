@@ -0,0 +1,138 @@
+package com.olegshan.gplayalexa.api;
+
+import com.olegshan.gplayalexa.metrics.Metrics;
+import com.olegshan.gplayalexa.trace.TraceRecorder;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class HttpTransport {
+    static final int    MAX_IDLE_CONNECTIONS   = 8;
+    static final long   KEEP_ALIVE_SECONDS     = 300;
+    static final long   CONNECT_TIMEOUT_MILLIS = 2000;
+    static final String WARM_UP_URL            = "https://mclients.googleapis.com/sj/v2.5/config";
+
+    private final OkHttpClient  client;
+    private final TraceRecorder recorder;
+    private final AtomicLong    calls          = new AtomicLong();
+    private final AtomicLong    newConnections = new AtomicLong();
+    private final AtomicLong    http2Calls     = new AtomicLong();
+
+    private final Set<Connection> connections = Collections.newSetFromMap(new WeakHashMap<>());
+
+    HttpTransport(int maxIdleConnections, long keepAliveSeconds, Metrics metrics) {
+        this(maxIdleConnections, keepAliveSeconds, metrics, null);
+    }
+
+    HttpTransport(int maxIdleConnections, long keepAliveSeconds, Metrics metrics, TraceRecorder recorder) {
+        this.recorder = recorder;
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, SECONDS))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(CONNECT_TIMEOUT_MILLIS, MILLISECONDS)
+            .readTimeout(Deadline.ALEXA_TIMEOUT_MILLIS, MILLISECONDS)
+            .writeTimeout(Deadline.ALEXA_TIMEOUT_MILLIS, MILLISECONDS)
+            .retryOnConnectionFailure(true)
+            .addNetworkInterceptor(this::count);
+        if (recorder != null && recorder.isEnabled())
+            builder.addInterceptor(this::record);
+        this.client = builder.build();
+        metrics.counter("HttpConnectionPool", "Hits", this::reusedConnections);
+        metrics.counter("HttpConnectionPool", "Misses", newConnections::get);
+        metrics.counter("HttpConnectionPool", "Http2Calls", http2Calls::get);
+    }
+
+    static HttpTransport fromEnvironment() {
+        String maxIdle = System.getenv("HTTP_MAX_IDLE_CONNECTIONS");
+        String keepAlive = System.getenv("HTTP_KEEP_ALIVE_SECONDS");
+        return new HttpTransport(
+            maxIdle == null || maxIdle.isEmpty() ? MAX_IDLE_CONNECTIONS : Integer.parseInt(maxIdle),
+            keepAlive == null || keepAlive.isEmpty() ? KEEP_ALIVE_SECONDS : Long.parseLong(keepAlive),
+            Metrics.metrics(),
+            TraceRecorder.recorder()
+        );
+    }
+
+    OkHttpClient.Builder newClientBuilder() {
+        return client.newBuilder();
+    }
+
+    void warmUp() {
+        Request request = new Request.Builder().url(WARM_UP_URL).head().build();
+        try (Response ignored = client.newCall(request).execute()) {
+            log.info("Warmed up connection to Google Music. {}", stats());
+        } catch (IOException e) {
+            log.warn("Couldn't warm up connection to Google Music", e);
+        }
+    }
+
+    long calls() {
+        return calls.get();
+    }
+
+    long newConnections() {
+        return newConnections.get();
+    }
+
+    long reusedConnections() {
+        return calls.get() - newConnections.get();
+    }
+
+    long http2Calls() {
+        return http2Calls.get();
+    }
+
+    String stats() {
+        ConnectionPool pool = client.connectionPool();
+        return String.format("HTTP pool: %d connections, %d idle, %d calls, %d new connections, %d over HTTP/2",
+            pool.connectionCount(), pool.idleConnectionCount(), calls(), newConnections(), http2Calls());
+    }
+
+    private Response count(Interceptor.Chain chain) throws IOException {
+        Connection connection = chain.connection();
+        calls.incrementAndGet();
+        if (connection != null) {
+            boolean isNew;
+            synchronized (connections) {
+                isNew = connections.add(connection);
+            }
+            if (isNew)
+                newConnections.incrementAndGet();
+            if (connection.protocol() == Protocol.HTTP_2)
+                http2Calls.incrementAndGet();
+        }
+        return chain.proceed(chain.request());
+    }
+
+    private Response record(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+        long latency = System.nanoTime() - start;
+
+        ResponseBody body = response.body();
+        MediaType contentType = body != null ? body.contentType() : null;
+        byte[] bytes = body != null ? body.bytes() : new byte[0];
+        Headers headers = response.headers();
+        String[] recordedHeaders = new String[headers.size() * 2];
+        for (int i = 0; i < headers.size(); i++) {
+            recordedHeaders[2 * i] = headers.name(i);
+            recordedHeaders[2 * i + 1] = headers.value(i);
+        }
+        recorder.upstream(request.method(), request.url().toString(), response.code(), recordedHeaders, latency,
+            bytes);
+        return response.newBuilder().body(ResponseBody.create(contentType, bytes)).build();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(HttpTransport.class);
+}
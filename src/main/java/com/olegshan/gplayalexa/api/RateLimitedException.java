@@ -0,0 +1,14 @@
+package com.olegshan.gplayalexa.api;
+
+import java.io.IOException;
+
+public class RateLimitedException extends IOException {
+
+    public RateLimitedException(String operation) {
+        super(operation + " was rejected because Google Music calls are being throttled");
+    }
+
+    public RateLimitedException(String operation, Throwable cause) {
+        super(operation + " was throttled by Google Music", cause);
+    }
+}
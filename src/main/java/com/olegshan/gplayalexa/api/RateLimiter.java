@@ -0,0 +1,188 @@
+package com.olegshan.gplayalexa.api;
+
+import com.olegshan.gplayalexa.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class RateLimiter {
+    static final double DEFAULT_RATE_PER_SECOND    = 50;
+    static final int    DEFAULT_BURST              = 100;
+    static final double MIN_RATE_PER_SECOND        = 1;
+    static final double RECOVERY_FRACTION          = 0.05;
+    static final long   MIN_BACKOFF_MILLIS         = 100;
+    static final long   MAX_BACKOFF_MILLIS         = SECONDS.toMillis(5);
+    static final long   MAX_BACKGROUND_WAIT_MILLIS = SECONDS.toMillis(10);
+    static final int    MAX_WAITING                = 64;
+
+    enum Priority {
+        PLAYBACK, INTERACTIVE, BACKGROUND
+    }
+
+    private final double     maxRate;
+    private final double     burst;
+    private final int[]      waiting   = new int[Priority.values().length];
+    private final AtomicLong acquired  = new AtomicLong();
+    private final AtomicLong delayed   = new AtomicLong();
+    private final AtomicLong rejected  = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    private double rate;
+    private double tokens;
+    private long   refilledAt;
+    private long   backoffNanos;
+    private long   backoffUntil;
+    private int    peakWaiting;
+
+    RateLimiter(double ratePerSecond, int burst, Metrics metrics) {
+        this.maxRate = ratePerSecond;
+        this.burst = Math.max(burst, 1);
+        this.rate = ratePerSecond;
+        this.tokens = this.burst;
+        this.refilledAt = System.nanoTime();
+        metrics.counter("GoogleMusicRateLimiter", "Acquired", acquired::get);
+        metrics.counter("GoogleMusicRateLimiter", "Delayed", delayed::get);
+        metrics.counter("GoogleMusicRateLimiter", "Rejected", rejected::get);
+        metrics.counter("GoogleMusicRateLimiter", "Throttled", throttled::get);
+        metrics.gauge("GoogleMusicRateLimiter", "QueueDepth", this::drainPeakWaiting);
+        metrics.gauge("GoogleMusicRateLimiter", "RatePerSecond", () -> Math.round(rate()));
+    }
+
+    static RateLimiter fromEnvironment(Metrics metrics) {
+        String rate = System.getenv("GPLAY_RATE_LIMIT");
+        String burst = System.getenv("GPLAY_RATE_BURST");
+        RateLimiter limiter = new RateLimiter(
+            rate == null || rate.isEmpty() ? DEFAULT_RATE_PER_SECOND : Double.parseDouble(rate),
+            burst == null || burst.isEmpty() ? DEFAULT_BURST : Integer.parseInt(burst),
+            metrics);
+        if (!limiter.isEnabled())
+            log.warn("Google Music calls aren't rate limited");
+        return limiter;
+    }
+
+    boolean isEnabled() {
+        return maxRate > 0;
+    }
+
+    void acquire(String operation, Priority priority, Deadline deadline) throws RateLimitedException,
+        InterruptedIOException {
+        if (!isEnabled())
+            return;
+
+        long giveUpAt = deadline != null
+            ? System.nanoTime() + deadline.remainingNanos()
+            : System.nanoTime() + MILLISECONDS.toNanos(MAX_BACKGROUND_WAIT_MILLIS);
+        int level = priority.ordinal();
+        synchronized (this) {
+            if (waiting[level] >= MAX_WAITING)
+                throw reject(operation);
+
+            waiting[level]++;
+            peakWaiting = Math.max(peakWaiting, totalWaiting());
+            boolean waited = false;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    boolean outranked = outranked(level);
+                    long waitNanos = Math.max(backoffUntil - now, nanosUntilToken());
+                    if (!outranked && waitNanos <= 0) {
+                        tokens -= 1;
+                        acquired.incrementAndGet();
+                        if (waited)
+                            delayed.incrementAndGet();
+                        return;
+                    }
+                    if (now >= giveUpAt || !outranked && now + waitNanos > giveUpAt)
+                        throw reject(operation);
+
+                    waited = true;
+                    NANOSECONDS.timedWait(this, outranked ? giveUpAt - now : waitNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(operation + " was interrupted while waiting for the rate limiter");
+            } finally {
+                waiting[level]--;
+                notifyAll();
+            }
+        }
+    }
+
+    synchronized void onThrottled() {
+        long now = System.nanoTime();
+        refill(now);
+        throttled.incrementAndGet();
+        rate = Math.max(rate / 2, Math.min(MIN_RATE_PER_SECOND, maxRate));
+        tokens = Math.min(tokens, 0);
+        backoffNanos = backoffNanos == 0
+            ? MILLISECONDS.toNanos(MIN_BACKOFF_MILLIS)
+            : Math.min(backoffNanos * 2, MILLISECONDS.toNanos(MAX_BACKOFF_MILLIS));
+        backoffUntil = Math.max(backoffUntil, now + backoffNanos);
+        log.warn("Google Music is throttling calls, slowing down to {} calls per second for at least {} ms",
+            String.format("%.1f", rate), NANOSECONDS.toMillis(backoffNanos));
+    }
+
+    synchronized void onSuccess() {
+        backoffNanos = 0;
+        if (rate >= maxRate)
+            return;
+        refill(System.nanoTime());
+        rate = Math.min(maxRate, rate + maxRate * RECOVERY_FRACTION);
+    }
+
+    synchronized double rate() {
+        return rate;
+    }
+
+    long acquired() {
+        return acquired.get();
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * rate / SECONDS.toNanos(1));
+        refilledAt = now;
+    }
+
+    private long nanosUntilToken() {
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * SECONDS.toNanos(1) / rate);
+    }
+
+    private boolean outranked(int level) {
+        for (int higher = 0; higher < level; higher++) {
+            if (waiting[higher] > 0)
+                return true;
+        }
+        return false;
+    }
+
+    private int totalWaiting() {
+        int total = 0;
+        for (int count : waiting)
+            total += count;
+        return total;
+    }
+
+    private synchronized long drainPeakWaiting() {
+        int peak = peakWaiting;
+        peakWaiting = totalWaiting();
+        return peak;
+    }
+
+    private RateLimitedException reject(String operation) {
+        rejected.incrementAndGet();
+        return new RateLimitedException(operation);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+}
@@ -0,0 +1,31 @@
+package com.olegshan.gplayalexa.api;
+
+import java.util.Arrays;
+
+class RecentLatency {
+    static final int    SAMPLES     = 128;
+    static final int    MIN_SAMPLES = 20;
+    static final double PERCENTILE  = 0.95;
+
+    private final long[] samples = new long[SAMPLES];
+    private       int    count;
+    private       int    next;
+
+    private volatile long percentileNanos = -1;
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % SAMPLES;
+        count = Math.min(count + 1, SAMPLES);
+        if (count < MIN_SAMPLES)
+            return;
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        percentileNanos = sorted[(int) Math.ceil(PERCENTILE * count) - 1];
+    }
+
+    long percentileNanos() {
+        return percentileNanos;
+    }
+}
@@ -0,0 +1,71 @@
+package com.olegshan.gplayalexa.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+class SingleFlight {
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong                                       shared   = new AtomicLong();
+
+    <T> T run(String key, Call<T> call) throws IOException {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader == null)
+            return lead(key, flight, call);
+
+        shared.incrementAndGet();
+        try {
+            return await(key, leader);
+        } catch (DeadlineExceededException e) {
+            Deadline deadline = Deadline.current();
+            if (deadline != null && deadline.expired())
+                throw e;
+            return call.run();
+        }
+    }
+
+    long shared() {
+        return shared.get();
+    }
+
+    private <T> T lead(String key, CompletableFuture<Object> flight, Call<T> call) throws IOException {
+        try {
+            T result = call.run();
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T await(String key, CompletableFuture<Object> flight) throws IOException {
+        Deadline deadline = Deadline.current();
+        try {
+            Object result = deadline != null ? flight.get(deadline.remainingNanos(), NANOSECONDS) : flight.get();
+            return (T) result;
+        } catch (ExecutionException e) {
+            throw GoogleMusicClient.unwrap(e);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(key + " was interrupted");
+        }
+    }
+
+    interface Call<T> {
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,130 @@
+package com.olegshan.gplayalexa.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+class TokenStore {
+    private static final int    FORMAT_VERSION  = 1;
+    private static final int    IV_LENGTH       = 12;
+    private static final int    TAG_LENGTH_BITS = 128;
+    private static final int    KEY_LENGTH_BITS = 256;
+    private static final int    KEY_ITERATIONS  = 4096;
+    private static final String CIPHER          = "AES/GCM/NoPadding";
+    private static final String KEY_DERIVATION  = "PBKDF2WithHmacSHA256";
+
+    private final Path         file;
+    private final SecretKey    key;
+    private final SecureRandom random = new SecureRandom();
+
+    TokenStore(Path file, String secret, String salt) {
+        this.file = file;
+        this.key = deriveKey(secret, salt);
+    }
+
+    StoredToken load(long now) {
+        if (key == null || !Files.exists(file))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION)
+                return null;
+
+            byte[] iv = new byte[IV_LENGTH];
+            in.readFully(iv);
+            byte[] encrypted = new byte[in.readInt()];
+            in.readFully(encrypted);
+
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            DataInputStream plain = new DataInputStream(new ByteArrayInputStream(cipher.doFinal(encrypted)));
+
+            StoredToken token = new StoredToken(plain.readUTF(), plain.readLong());
+            if (token.expiresAt <= now) {
+                log.info("Stored auth token has expired");
+                return null;
+            }
+            return token;
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("Couldn't read stored auth token from {}", file, e);
+            return null;
+        }
+    }
+
+    void save(String token, long expiresAt) {
+        if (key == null)
+            return;
+
+        try {
+            ByteArrayOutputStream plain = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(plain)) {
+                out.writeUTF(token);
+                out.writeLong(expiresAt);
+            }
+
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] encrypted = cipher.doFinal(plain.toByteArray());
+
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "token", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.write(iv);
+                out.writeInt(encrypted.length);
+                out.write(encrypted);
+            }
+            Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("Couldn't store auth token to {}", file, e);
+        }
+    }
+
+    private static SecretKey deriveKey(String secret, String salt) {
+        if (secret == null || secret.isEmpty())
+            return null;
+
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), KEY_ITERATIONS,
+            KEY_LENGTH_BITS);
+        try {
+            byte[] key = SecretKeyFactory.getInstance(KEY_DERIVATION).generateSecret(spec).getEncoded();
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+            Arrays.fill(key, (byte) 0);
+            return secretKey;
+        } catch (GeneralSecurityException e) {
+            log.warn("Couldn't derive auth token encryption key, token won't be stored", e);
+            return null;
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    static class StoredToken {
+        final String token;
+        final long   expiresAt;
+
+        StoredToken(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TokenStore.class);
+}
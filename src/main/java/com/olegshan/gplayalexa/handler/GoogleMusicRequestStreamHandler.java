@@ -1,20 +1,161 @@
 package com.olegshan.gplayalexa.handler;
 
-import com.amazon.speech.speechlet.lambda.SpeechletRequestStreamHandler;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.*;
+import com.amazon.speech.speechlet.util.UserAgentUtils;
+import com.amazon.speech.speechlet.verifier.*;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.olegshan.gplayalexa.api.GoogleMusicApiProvider;
+import com.olegshan.gplayalexa.logging.Logging;
+import com.olegshan.gplayalexa.metrics.Metrics;
 import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import com.olegshan.gplayalexa.trace.TraceRecorder;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 @SuppressWarnings("unused")
-public class GoogleMusicRequestStreamHandler extends SpeechletRequestStreamHandler {
+public class GoogleMusicRequestStreamHandler implements RequestStreamHandler {
     private static final Set<String> supportedApplicationIds = new HashSet<>();
+    private static final byte[]      EMPTY_RESPONSE          = emptyResponse();
+    private static final long        METRICS_PERIOD_MILLIS   = SECONDS.toMillis(60);
 
     static {
         supportedApplicationIds.add("amzn1.ask.skill.da7a7858-5bf8-46be-a12a-30f85a7b3283");
     }
 
+    private final Set<String>                            applicationIds;
+    private final SpeechletRequestDispatcher             dispatcher;
+    private final List<SpeechletRequestEnvelopeVerifier> requestVerifiers;
+    private final List<SpeechletResponseVerifier>        responseVerifiers;
+    private final ResponseWriter                         responseWriter;
+    private final Metrics                                metrics   = Metrics.metrics();
+    private final TraceRecorder                          recorder  = TraceRecorder.recorder();
+    private final AtomicBoolean                          coldStart = new AtomicBoolean(true);
+
     public GoogleMusicRequestStreamHandler() {
-        super(new GoogleMusicSpeechlet(), supportedApplicationIds);
+        this(createSpeechlet(), supportedApplicationIds);
+    }
+
+    GoogleMusicRequestStreamHandler(SpeechletV2 speechlet, Set<String> applicationIds,
+                                    SpeechletRequestEnvelopeVerifier... extraVerifiers) {
+        this.applicationIds = applicationIds;
+        this.dispatcher = new SpeechletRequestDispatcher(speechlet);
+        this.requestVerifiers = new ArrayList<>();
+        this.requestVerifiers.add(new ApplicationIdSpeechletRequestEnvelopeVerifier(applicationIds));
+        this.requestVerifiers.addAll(Arrays.asList(extraVerifiers));
+        this.responseVerifiers = Arrays.asList(
+            new OutputSpeechSpeechletResponseVerifier(),
+            new CardSpeechletResponseVerifier()
+        );
+        this.responseWriter = new ResponseWriter(GoogleMusicSpeechlet.constantResponses(), metrics);
+    }
+
+    static GoogleMusicRequestStreamHandler withRequestVerifiers(SpeechletRequestEnvelopeVerifier... verifiers) {
+        return new GoogleMusicRequestStreamHandler(createSpeechlet(), supportedApplicationIds, verifiers);
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        long start = System.nanoTime();
+        String startType = coldStart.getAndSet(false) ? "Cold" : "Warm";
+        byte[] request = IOUtils.toByteArray(input);
+
+        RequestPeek peek = RequestPeek.of(request);
+        long traceId = recorder.request(request);
+        ByteArrayOutputStream traced = traceId >= 0 ? new ByteArrayOutputStream(1024) : null;
+        try {
+            respond(peek, request, traced != null ? traced : output);
+            if (traced != null)
+                traced.writeTo(output);
+        } finally {
+            if (traced != null)
+                recorder.response(traceId, start, traced.toByteArray());
+            metrics.latency(peek.metricType(), "Start", startType).recordSince(start);
+        }
+    }
+
+    private void respond(RequestPeek peek, byte[] request, OutputStream output) throws IOException {
+        if (peek.isNoOp() && isSupported(peek.applicationId())) {
+            log.debug("{} acknowledged without dispatching", peek.type());
+            output.write(EMPTY_RESPONSE);
+            return;
+        }
+
+        try {
+            dispatch(request, output);
+        } catch (SpeechletRequestHandlerException | SpeechletException e) {
+            throw new RuntimeException(e);
+        }
     }
+
+    private void dispatch(byte[] request, OutputStream output)
+        throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        SpeechletRequestEnvelope<?> requestEnvelope;
+        try {
+            requestEnvelope = SpeechletRequestEnvelope.fromJson(request);
+        } catch (IOException e) {
+            throw new InvalidRequestException("Could not parse SpeechletRequest, rejecting request", e);
+        }
+        if (requestEnvelope.getRequest() == null)
+            throw new InvalidRequestException("SpeechletRequest has no request, rejecting request");
+
+        String requestId = requestEnvelope.getRequest().getRequestId();
+        for (SpeechletRequestEnvelopeVerifier verifier : requestVerifiers) {
+            if (!verifier.verify(requestEnvelope))
+                throw new InvalidRequestException(String.format(
+                    "Could not validate SpeechletRequest %s using verifier %s, rejecting request",
+                    requestId, verifier.getClass().getSimpleName()));
+        }
+
+        SpeechletResponseEnvelope responseEnvelope =
+            dispatcher.dispatchSpeechletCall(requestEnvelope, requestEnvelope.getSession());
+        for (SpeechletResponseVerifier verifier : responseVerifiers) {
+            if (!verifier.verify(responseEnvelope, requestEnvelope.getSession()))
+                throw new SpeechletRequestHandlerException(String.format(
+                    "Could not validate SpeechletResponse %s using verifier %s, rejecting response",
+                    requestId, verifier.getClass().getSimpleName()));
+        }
+
+        responseWriter.write(responseEnvelope, output);
+    }
+
+    private boolean isSupported(String applicationId) {
+        return applicationIds.isEmpty() || applicationIds.contains(applicationId);
+    }
+
+    private static byte[] emptyResponse() {
+        SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+        envelope.setVersion("1.0");
+        envelope.setUserAgent(UserAgentUtils.getUserAgent());
+        try {
+            return envelope.toJsonBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SpeechletV2 createSpeechlet() {
+        Logging.configure();
+        Metrics.metrics().startReporting(METRICS_PERIOD_MILLIS, System.out::println);
+        return new GoogleMusicSpeechlet(GoogleMusicApiProvider.fromEnvironment().start());
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(GoogleMusicRequestStreamHandler.class);
 }
@@ -0,0 +1,12 @@
+package com.olegshan.gplayalexa.handler;
+
+class InvalidRequestException extends RuntimeException {
+
+    InvalidRequestException(String message) {
+        super(message);
+    }
+
+    InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,97 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+class RequestPeek {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final Set<String> NO_OP_TYPES = new HashSet<>(Arrays.asList(
+        "AudioPlayer.PlaybackStarted",
+        "AudioPlayer.PlaybackFinished"
+    ));
+
+    private static final Set<String> METRIC_TYPES = new HashSet<>(Arrays.asList(
+        "LaunchRequest",
+        "IntentRequest",
+        "SessionEndedRequest",
+        "AudioPlayer.PlaybackStarted",
+        "AudioPlayer.PlaybackFinished",
+        "AudioPlayer.PlaybackStopped",
+        "AudioPlayer.PlaybackNearlyFinished",
+        "AudioPlayer.PlaybackFailed",
+        "System.ExceptionEncountered"
+    ));
+    private static final String      OTHER_TYPE   = "Other";
+
+    private final String type;
+    private final String applicationId;
+
+    private RequestPeek(String type, String applicationId) {
+        this.type = type;
+        this.applicationId = applicationId;
+    }
+
+    static RequestPeek of(byte[] request) {
+        String[] values = new String[3];
+        try (JsonParser parser = JSON.createParser(request)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return new RequestPeek(null, null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value != JsonToken.START_OBJECT)
+                    continue;
+
+                if ("request".equals(field))
+                    values[0] = find(parser, "type");
+                else if ("context".equals(field))
+                    values[1] = find(parser, "System", "application", "applicationId");
+                else if ("session".equals(field))
+                    values[2] = find(parser, "application", "applicationId");
+                else
+                    parser.skipChildren();
+            }
+        } catch (IOException e) {
+            return new RequestPeek(null, null);
+        }
+        return new RequestPeek(values[0], values[1] != null ? values[1] : values[2]);
+    }
+
+    String type() {
+        return type;
+    }
+
+    String applicationId() {
+        return applicationId;
+    }
+
+    String metricType() {
+        return type != null && METRIC_TYPES.contains(type) ? type : OTHER_TYPE;
+    }
+
+    boolean isNoOp() {
+        return type != null && NO_OP_TYPES.contains(type);
+    }
+
+    private static String find(JsonParser parser, String... path) throws IOException {
+        String found = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean matches = path[0].equals(parser.getCurrentName());
+            JsonToken value = parser.nextToken();
+            if (matches && path.length == 1 && value == JsonToken.VALUE_STRING)
+                found = parser.getText();
+            else if (matches && path.length > 1 && value == JsonToken.START_OBJECT)
+                found = find(parser, Arrays.copyOfRange(path, 1, path.length));
+            else
+                parser.skipChildren();
+        }
+        return found;
+    }
+}
@@ -0,0 +1,339 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.Directive;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.interfaces.audioplayer.AudioItem;
+import com.amazon.speech.speechlet.interfaces.audioplayer.Stream;
+import com.amazon.speech.speechlet.interfaces.audioplayer.directive.PlayDirective;
+import com.amazon.speech.speechlet.interfaces.audioplayer.directive.StopDirective;
+import com.amazon.speech.speechlet.util.UserAgentUtils;
+import com.amazon.speech.ui.OutputSpeech;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.Reprompt;
+import com.olegshan.gplayalexa.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+class ResponseWriter {
+    static final String VERSION            = "1.0";
+    static final int    MAX_RESPONSE_BYTES = 24576;
+
+    private static final String[] SLOTS    = {"@@text@@", "@@reprompt@@", "@@url@@", "@@token@@", "@@previous@@"};
+    private static final int      TEXT     = 0;
+    private static final int      REPROMPT = 1;
+    private static final int      URL      = 2;
+    private static final int      TOKEN    = 3;
+    private static final int      PREVIOUS = 4;
+
+    private static final Template NOT_TEMPLATED = new Template(new byte[0][], new int[0]);
+
+    private final String                           userAgent  = UserAgentUtils.getUserAgent();
+    private final Map<SpeechletResponse, byte[][]> constants  = new IdentityHashMap<>();
+    private final ConcurrentMap<String, Template>  templates  = new ConcurrentHashMap<>();
+    private final AtomicLong                       constant   = new AtomicLong();
+    private final AtomicLong                       templated  = new AtomicLong();
+    private final AtomicLong                       serialized = new AtomicLong();
+
+    ResponseWriter(Collection<SpeechletResponse> constantResponses, Metrics metrics) {
+        for (SpeechletResponse response : constantResponses) {
+            SpeechletResponseEnvelope withAttributes = envelope(response);
+            withAttributes.setSessionAttributes(new HashMap<>());
+            constants.put(response, new byte[][]{serialize(envelope(response)), serialize(withAttributes)});
+        }
+        metrics.counter("ResponseWriter", "Constant", constant::get);
+        metrics.counter("ResponseWriter", "Templated", templated::get);
+        metrics.counter("ResponseWriter", "Serialized", serialized::get);
+    }
+
+    void write(SpeechletResponseEnvelope envelope, OutputStream output)
+        throws IOException, SpeechletRequestHandlerException {
+        SpeechletResponse response = envelope.getResponse();
+        boolean standard = VERSION.equals(envelope.getVersion()) && userAgent.equals(envelope.getUserAgent())
+            && (envelope.getSessionAttributes() == null || envelope.getSessionAttributes().isEmpty());
+
+        byte[][] cached = standard && response != null ? constants.get(response) : null;
+        if (cached != null) {
+            constant.incrementAndGet();
+            byte[] bytes = cached[envelope.getSessionAttributes() == null ? 0 : 1];
+            checkSize(bytes.length);
+            output.write(bytes);
+            return;
+        }
+
+        String shape = standard ? shape(envelope) : null;
+        Template template = shape != null ? templates.computeIfAbsent(shape, key -> template(envelope)) : NOT_TEMPLATED;
+        if (template != NOT_TEMPLATED) {
+            templated.incrementAndGet();
+            template.write(values(response), output);
+            return;
+        }
+
+        serialized.incrementAndGet();
+        byte[] bytes = envelope.toJsonBytes();
+        checkSize(bytes.length);
+        output.write(bytes);
+    }
+
+    long constantResponses() {
+        return constant.get();
+    }
+
+    long templatedResponses() {
+        return templated.get();
+    }
+
+    long serializedResponses() {
+        return serialized.get();
+    }
+
+    private static void checkSize(int bytes) throws SpeechletRequestHandlerException {
+        if (bytes > MAX_RESPONSE_BYTES)
+            throw new SpeechletRequestHandlerException(String.format(
+                "Speechlet response of %d bytes exceeds the %d bytes allowed by Alexa, rejecting response",
+                bytes, MAX_RESPONSE_BYTES));
+    }
+
+    private SpeechletResponseEnvelope envelope(SpeechletResponse response) {
+        SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+        envelope.setVersion(VERSION);
+        envelope.setUserAgent(userAgent);
+        envelope.setResponse(response);
+        return envelope;
+    }
+
+    private static String shape(SpeechletResponseEnvelope envelope) {
+        SpeechletResponse response = envelope.getResponse();
+        if (response == null || response.getCard() != null
+            || !isPlainText(response.getOutputSpeech())
+            || response.getReprompt() != null && !isPlainText(response.getReprompt().getOutputSpeech())
+            || response.getReprompt() != null && response.getReprompt().getOutputSpeech() == null)
+            return null;
+
+        StringBuilder shape = new StringBuilder()
+            .append(envelope.getSessionAttributes() != null).append('|')
+            .append(response.getNullableShouldEndSession()).append('|')
+            .append(response.getOutputSpeech() != null).append('|')
+            .append(response.getReprompt() != null).append('|');
+
+        List<Directive> directives = response.getDirectives();
+        if (directives == null)
+            return shape.append("none").toString();
+        if (directives.isEmpty())
+            return shape.append("empty").toString();
+        if (directives.size() != 1)
+            return null;
+
+        Directive directive = directives.get(0);
+        if (directive.getClass() == StopDirective.class)
+            return shape.append("stop").toString();
+        if (directive.getClass() != PlayDirective.class)
+            return null;
+
+        PlayDirective play = (PlayDirective) directive;
+        Stream stream = play.getAudioItem() != null ? play.getAudioItem().getStream() : null;
+        if (stream == null || stream.getUrl() == null || stream.getToken() == null)
+            return null;
+        return shape.append("play|").append(play.getPlayBehavior()).append('|')
+            .append(stream.getExpectedPreviousToken() != null).append('|')
+            .append(stream.getOffsetInMilliseconds()).toString();
+    }
+
+    private static boolean isPlainText(OutputSpeech speech) {
+        return speech == null
+            || speech.getClass() == PlainTextOutputSpeech.class && speech.getId() == null
+            && ((PlainTextOutputSpeech) speech).getText() != null;
+    }
+
+    private static String[] values(SpeechletResponse response) {
+        String[] values = new String[SLOTS.length];
+        if (response.getOutputSpeech() != null)
+            values[TEXT] = ((PlainTextOutputSpeech) response.getOutputSpeech()).getText();
+        if (response.getReprompt() != null)
+            values[REPROMPT] = ((PlainTextOutputSpeech) response.getReprompt().getOutputSpeech()).getText();
+        if (response.getDirectives() != null && !response.getDirectives().isEmpty()
+            && response.getDirectives().get(0) instanceof PlayDirective) {
+            Stream stream = ((PlayDirective) response.getDirectives().get(0)).getAudioItem().getStream();
+            values[URL] = stream.getUrl();
+            values[TOKEN] = stream.getToken();
+            values[PREVIOUS] = stream.getExpectedPreviousToken();
+        }
+        return values;
+    }
+
+    private Template template(SpeechletResponseEnvelope envelope) {
+        SpeechletResponse response = envelope.getResponse();
+        SpeechletResponse sample = new SpeechletResponse();
+        sample.setNullableShouldEndSession(response.getNullableShouldEndSession());
+        if (response.getOutputSpeech() != null)
+            sample.setOutputSpeech(speech(SLOTS[TEXT]));
+        if (response.getReprompt() != null) {
+            Reprompt reprompt = new Reprompt();
+            reprompt.setOutputSpeech(speech(SLOTS[REPROMPT]));
+            sample.setReprompt(reprompt);
+        }
+        if (response.getDirectives() != null)
+            sample.setDirectives(sampleDirectives(response.getDirectives()));
+
+        SpeechletResponseEnvelope sampleEnvelope = envelope(sample);
+        if (envelope.getSessionAttributes() != null)
+            sampleEnvelope.setSessionAttributes(new HashMap<>());
+
+        try {
+            return Template.parse(new String(sampleEnvelope.toJsonBytes(), UTF_8));
+        } catch (IOException e) {
+            log.warn("Couldn't build a response template, serializing responses of this shape", e);
+            return NOT_TEMPLATED;
+        }
+    }
+
+    private static List<Directive> sampleDirectives(List<Directive> directives) {
+        List<Directive> sample = new ArrayList<>();
+        for (Directive directive : directives) {
+            if (!(directive instanceof PlayDirective)) {
+                sample.add(directive);
+                continue;
+            }
+
+            PlayDirective play = (PlayDirective) directive;
+            Stream stream = new Stream();
+            stream.setUrl(SLOTS[URL]);
+            stream.setToken(SLOTS[TOKEN]);
+            if (play.getAudioItem().getStream().getExpectedPreviousToken() != null)
+                stream.setExpectedPreviousToken(SLOTS[PREVIOUS]);
+            stream.setOffsetInMilliseconds(play.getAudioItem().getStream().getOffsetInMilliseconds());
+
+            AudioItem audioItem = new AudioItem();
+            audioItem.setStream(stream);
+            PlayDirective samplePlay = new PlayDirective();
+            samplePlay.setPlayBehavior(play.getPlayBehavior());
+            samplePlay.setAudioItem(audioItem);
+            sample.add(samplePlay);
+        }
+        return sample;
+    }
+
+    private static PlainTextOutputSpeech speech(String text) {
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText(text);
+        return speech;
+    }
+
+    private static byte[] serialize(SpeechletResponseEnvelope envelope) {
+        try {
+            return envelope.toJsonBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Template {
+        private final byte[][] parts;
+        private final int[]    slots;
+        private final int      length;
+
+        private Template(byte[][] parts, int[] slots) {
+            this.parts = parts;
+            this.slots = slots;
+            int length = 0;
+            for (byte[] part : parts)
+                length += part.length;
+            this.length = length;
+        }
+
+        private static Template parse(String json) {
+            List<byte[]> parts = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            int position = 0;
+            while (true) {
+                int next = -1;
+                int slot = -1;
+                for (int i = 0; i < SLOTS.length; i++) {
+                    int found = json.indexOf(SLOTS[i], position);
+                    if (found >= 0 && (next < 0 || found < next)) {
+                        next = found;
+                        slot = i;
+                    }
+                }
+                if (next < 0)
+                    break;
+                parts.add(json.substring(position, next).getBytes(UTF_8));
+                slots.add(slot);
+                position = next + SLOTS[slot].length();
+            }
+            parts.add(json.substring(position).getBytes(UTF_8));
+
+            int[] slotArray = new int[slots.size()];
+            for (int i = 0; i < slotArray.length; i++)
+                slotArray[i] = slots.get(i);
+            return new Template(parts.toArray(new byte[0][]), slotArray);
+        }
+
+        private void write(String[] values, OutputStream output)
+            throws IOException, SpeechletRequestHandlerException {
+            byte[][] escaped = new byte[slots.length][];
+            int size = length;
+            for (int i = 0; i < slots.length; i++) {
+                escaped[i] = escape(values[slots[i]]).getBytes(UTF_8);
+                size += escaped[i].length;
+            }
+            checkSize(size);
+
+            for (int i = 0; i < slots.length; i++) {
+                output.write(parts[i]);
+                output.write(escaped[i]);
+            }
+            output.write(parts[slots.length]);
+        }
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = c == '"' || c == '\\' || c < 0x20 ? escape(c) : null;
+            if (replacement != null) {
+                if (escaped == null)
+                    escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+                escaped.append(replacement);
+            } else if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped != null ? escaped.toString() : value;
+    }
+
+    private static String escape(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\b':
+                return "\\b";
+            case '\t':
+                return "\\t";
+            case '\n':
+                return "\\n";
+            case '\f':
+                return "\\f";
+            case '\r':
+                return "\\r";
+            default:
+                return String.format("\\u%04X", (int) c);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseWriter.class);
+}
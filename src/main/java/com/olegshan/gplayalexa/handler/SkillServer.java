@@ -0,0 +1,270 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.speechlet.authentication.SpeechletRequestSignatureVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestVerifierWrapper;
+import com.amazon.speech.speechlet.verifier.TimestampSpeechletRequestVerifier;
+import com.olegshan.gplayalexa.metrics.Metrics;
+import com.sun.net.httpserver.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class SkillServer {
+    static final int    PORT                        = 8443;
+    static final int    THREADS                     = 256;
+    static final int    QUEUE                       = 1024;
+    static final int    BACKLOG                     = 512;
+    static final int    MAX_REQUEST_BYTES           = 256 * 1024;
+    static final long   TIMESTAMP_TOLERANCE_SECONDS = 150;
+    static final String SKILL_PATH                  = "/alexa";
+    static final String PING_PATH                   = "/ping";
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpServer                      server;
+    private final ThreadPoolExecutor              executor;
+    private final GoogleMusicRequestStreamHandler handler;
+    private final boolean                         verifySignatures;
+    private final AtomicLong                      requests          = new AtomicLong();
+    private final AtomicLong                      invalidSignatures = new AtomicLong();
+    private final AtomicLong                      rejected          = new AtomicLong();
+    private final AtomicLong                      failed            = new AtomicLong();
+    private final AtomicLong                      overloaded        = new AtomicLong();
+    private final AtomicLong                      tooLarge          = new AtomicLong();
+
+    SkillServer(HttpServer server, int threads, GoogleMusicRequestStreamHandler handler, boolean verifySignatures,
+                Metrics metrics) {
+        this(server, threads, QUEUE, handler, verifySignatures, metrics);
+    }
+
+    SkillServer(HttpServer server, int threads, int queue, GoogleMusicRequestStreamHandler handler,
+                boolean verifySignatures, Metrics metrics) {
+        this.server = server;
+        this.handler = handler;
+        this.verifySignatures = verifySignatures;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS, new ArrayBlockingQueue<>(queue),
+            daemonThreads());
+        this.executor.allowCoreThreadTimeOut(true);
+        server.createContext(SKILL_PATH, this::dispatch);
+        server.createContext(PING_PATH, this::ping);
+        metrics.counter("SkillServer", "Requests", requests::get);
+        metrics.counter("SkillServer", "InvalidSignatures", invalidSignatures::get);
+        metrics.counter("SkillServer", "Rejected", rejected::get);
+        metrics.counter("SkillServer", "Failed", failed::get);
+        metrics.counter("SkillServer", "Overloaded", overloaded::get);
+        metrics.counter("SkillServer", "TooLarge", tooLarge::get);
+    }
+
+    public static void main(String[] args) throws Exception {
+        SkillServer server = fromEnvironment();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "skill-server-shutdown"));
+        server.start();
+    }
+
+    static SkillServer fromEnvironment() throws IOException, GeneralSecurityException {
+        String port = System.getenv("SERVER_PORT");
+        String threads = System.getenv("SERVER_THREADS");
+        String keyStore = System.getenv("SERVER_KEYSTORE");
+        InetSocketAddress address = new InetSocketAddress(
+            port == null || port.isEmpty() ? PORT : Integer.parseInt(port));
+
+        HttpServer server;
+        if (keyStore == null || keyStore.isEmpty()) {
+            log.warn("SERVER_KEYSTORE is not set, serving plain HTTP; TLS has to be terminated in front of the server");
+            server = HttpServer.create(address, BACKLOG);
+        } else {
+            String password = System.getenv("SERVER_KEYSTORE_PASSWORD");
+            HttpsServer https = HttpsServer.create(address, BACKLOG);
+            https.setHttpsConfigurator(new Tls12Configurator(
+                sslContext(keyStore, password == null ? new char[0] : password.toCharArray())));
+            server = https;
+        }
+
+        GoogleMusicRequestStreamHandler handler = GoogleMusicRequestStreamHandler.withRequestVerifiers(
+            new SpeechletRequestVerifierWrapper(
+                new TimestampSpeechletRequestVerifier(TIMESTAMP_TOLERANCE_SECONDS, SECONDS)));
+        return new SkillServer(server,
+            threads == null || threads.isEmpty() ? THREADS : Integer.parseInt(threads),
+            handler,
+            !Boolean.parseBoolean(System.getenv("DISABLE_SIGNATURE_CHECK")),
+            Metrics.metrics()
+        );
+    }
+
+    void start() {
+        server.start();
+        log.info("Serving Alexa requests on {}{} with {} threads{}", server.getAddress(), SKILL_PATH,
+            executor.getMaximumPoolSize(), verifySignatures ? "" : ", request signatures are NOT verified");
+    }
+
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try {
+            executor.execute(() -> {
+                try {
+                    handle(exchange);
+                } catch (IOException e) {
+                    log.debug("Couldn't answer request", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            overloaded.incrementAndGet();
+            try {
+                respond(exchange, 503, EMPTY);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, EMPTY);
+                return;
+            }
+
+            byte[] request = readBody(exchange);
+            if (request == null) {
+                tooLarge.incrementAndGet();
+                respond(exchange, 413, EMPTY);
+                return;
+            }
+            if (verifySignatures) {
+                Headers headers = exchange.getRequestHeaders();
+                try {
+                    SpeechletRequestSignatureVerifier.checkRequestSignature(request,
+                        headers.getFirst(Sdk.SIGNATURE_REQUEST_HEADER),
+                        headers.getFirst(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER));
+                } catch (SecurityException e) {
+                    invalidSignatures.incrementAndGet();
+                    log.warn("Rejected request with invalid signature: {}", e.getMessage());
+                    respond(exchange, 400, EMPTY);
+                    return;
+                }
+            }
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream(1024);
+            try {
+                handler.handleRequest(new ByteArrayInputStream(request), response, null);
+            } catch (InvalidRequestException e) {
+                rejected.incrementAndGet();
+                log.warn("Rejected invalid request: {}", e.getMessage());
+                respond(exchange, 400, EMPTY);
+                return;
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("Couldn't handle request", e);
+                respond(exchange, 500, EMPTY);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+            respond(exchange, 200, response.toByteArray());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void ping(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, "OK".getBytes(UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            if (contentLength != null && Long.parseLong(contentLength.trim()) > MAX_REQUEST_BYTES)
+                return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        InputStream input = exchange.getRequestBody();
+        for (int read; (read = input.read(buffer)) >= 0; ) {
+            if (body.size() + read > MAX_REQUEST_BYTES)
+                return null;
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0)
+            exchange.getResponseBody().write(body);
+    }
+
+    private static SSLContext sslContext(String keyStorePath, char[] password)
+        throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(keyStorePath.endsWith(".jks") ? "JKS" : "PKCS12");
+        try (InputStream input = Files.newInputStream(Paths.get(keyStorePath))) {
+            keyStore.load(input, password);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "skill-server-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Tls12Configurator extends HttpsConfigurator {
+        private Tls12Configurator(SSLContext context) {
+            super(context);
+        }
+
+        @Override
+        public void configure(HttpsParameters params) {
+            SSLParameters parameters = getSSLContext().getDefaultSSLParameters();
+            parameters.setProtocols(new String[]{"TLSv1.2"});
+            params.setSSLParameters(parameters);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SkillServer.class);
+}
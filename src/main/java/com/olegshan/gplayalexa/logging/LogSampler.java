@@ -0,0 +1,27 @@
+package com.olegshan.gplayalexa.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LogSampler {
+    static final int DEFAULT_RATE = 20;
+
+    private final int        rate;
+    private final AtomicLong events = new AtomicLong();
+
+    public LogSampler(int rate) {
+        this.rate = Math.max(rate, 1);
+    }
+
+    public static LogSampler fromEnvironment() {
+        String rate = System.getenv("LOG_SAMPLE_RATE");
+        return new LogSampler(rate == null || rate.isEmpty() ? DEFAULT_RATE : Integer.parseInt(rate));
+    }
+
+    public boolean sample() {
+        return rate == 1 || events.getAndIncrement() % rate == 0;
+    }
+
+    public int rate() {
+        return rate;
+    }
+}
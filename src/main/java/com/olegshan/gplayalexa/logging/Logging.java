@@ -0,0 +1,80 @@
+package com.olegshan.gplayalexa.logging;
+
+import org.apache.log4j.*;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.varia.LevelRangeFilter;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Logging {
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private static final AtomicBoolean configured = new AtomicBoolean();
+
+    public static void configure() {
+        if (!configured.compareAndSet(false, true))
+            return;
+
+        URL config = Logging.class.getResource("/log4j.properties");
+        if (config != null)
+            PropertyConfigurator.configure(config);
+        if ("false".equalsIgnoreCase(System.getenv("LOG_ASYNC")))
+            return;
+
+        String bufferSize = System.getenv("LOG_BUFFER_SIZE");
+        makeAsync(Logger.getRootLogger(),
+            bufferSize == null || bufferSize.isEmpty() ? DEFAULT_BUFFER_SIZE : Integer.parseInt(bufferSize));
+    }
+
+    public static AsyncAppender makeAsync(Logger logger, int bufferSize) {
+        AsyncAppender async = new AsyncAppender();
+        async.setName("async");
+        async.setBufferSize(bufferSize);
+        async.setBlocking(false);
+        async.setLocationInfo(false);
+        LevelRangeFilter belowWarn = new LevelRangeFilter();
+        belowWarn.setLevelMax(Level.INFO);
+        async.addFilter(belowWarn);
+
+        List<Appender> appenders = new ArrayList<>();
+        for (Enumeration<?> all = logger.getAllAppenders(); all.hasMoreElements(); )
+            appenders.add((Appender) all.nextElement());
+        for (Appender appender : appenders) {
+            logger.removeAppender(appender);
+            async.addAppender(appender);
+        }
+        logger.addAppender(async);
+        logger.addAppender(new SynchronousAppender(appenders, Level.WARN));
+        Runtime.getRuntime().addShutdownHook(new Thread(async::close, "async-log-flush"));
+        return async;
+    }
+
+    private static class SynchronousAppender extends AppenderSkeleton {
+        private final List<Appender> appenders;
+
+        private SynchronousAppender(List<Appender> appenders, Level threshold) {
+            this.appenders = appenders;
+            setName("sync");
+            setThreshold(threshold);
+        }
+
+        @Override
+        protected void append(LoggingEvent event) {
+            for (Appender appender : appenders)
+                appender.doAppend(event);
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
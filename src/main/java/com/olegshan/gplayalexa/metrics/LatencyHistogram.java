@@ -0,0 +1,30 @@
+package com.olegshan.gplayalexa.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class LatencyHistogram {
+    static final long HIGHEST_TRACKABLE_MICROS = MINUTES.toMicros(1);
+    static final int  SIGNIFICANT_DIGITS       = 2;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+
+    private Histogram interval;
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        long micros = NANOSECONDS.toMicros(nanos);
+        recorder.recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+    }
+
+    synchronized Histogram intervalHistogram() {
+        interval = recorder.getIntervalHistogram(interval);
+        return interval;
+    }
+}
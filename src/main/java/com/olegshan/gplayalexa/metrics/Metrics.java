@@ -0,0 +1,204 @@
+package com.olegshan.gplayalexa.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+public class Metrics {
+    static final String NAMESPACE = "GPlayAlexa";
+
+    private static final Metrics INSTANCE = new Metrics(System::currentTimeMillis);
+
+    private final LongSupplier                                clock;
+    private final ConcurrentMap<MetricKey, LatencyHistogram>  latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Map<String, Counter>> counters  = new ConcurrentHashMap<>();
+    private final AtomicBoolean                               reporting = new AtomicBoolean();
+
+    Metrics(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public static Metrics metrics() {
+        return INSTANCE;
+    }
+
+    public LatencyHistogram latency(String operation) {
+        return latency(new MetricKey(operation, null, null));
+    }
+
+    public LatencyHistogram latency(String operation, String dimension, String value) {
+        return latency(new MetricKey(operation, dimension, value));
+    }
+
+    public void counter(String operation, String name, LongSupplier total) {
+        counters.computeIfAbsent(operation, key -> Collections.synchronizedMap(new TreeMap<>()))
+            .put(name, new Counter(total, false));
+    }
+
+    public void gauge(String operation, String name, LongSupplier value) {
+        counters.computeIfAbsent(operation, key -> Collections.synchronizedMap(new TreeMap<>()))
+            .put(name, new Counter(value, true));
+    }
+
+    public void startReporting(long periodMillis, Consumer<String> sink) {
+        if (!reporting.compareAndSet(false, true))
+            return;
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> report(sink), periodMillis, periodMillis, MILLISECONDS);
+    }
+
+    void report(Consumer<String> sink) {
+        try {
+            drain().forEach(sink);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't report metrics", e);
+        }
+    }
+
+    List<String> drain() {
+        long timestamp = clock.getAsLong();
+        List<String> lines = new ArrayList<>();
+
+        for (Map.Entry<MetricKey, LatencyHistogram> entry : latencies.entrySet()) {
+            Histogram histogram = entry.getValue().intervalHistogram();
+            if (histogram.getTotalCount() > 0)
+                lines.add(latencyLine(timestamp, entry.getKey(), histogram));
+        }
+
+        for (Map.Entry<String, Map<String, Counter>> entry : counters.entrySet()) {
+            Map<String, Long> deltas = new TreeMap<>();
+            synchronized (entry.getValue()) {
+                entry.getValue().forEach((name, counter) -> deltas.put(name, counter.delta()));
+            }
+            if (deltas.values().stream().anyMatch(delta -> delta != 0))
+                lines.add(counterLine(timestamp, entry.getKey(), deltas));
+        }
+        return lines;
+    }
+
+    private LatencyHistogram latency(MetricKey key) {
+        LatencyHistogram latency = latencies.get(key);
+        return latency != null ? latency : latencies.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    private static String latencyLine(long timestamp, MetricKey key, Histogram histogram) {
+        StringBuilder line = header(timestamp, key.dimension)
+            .append("\"Metrics\":[{\"Name\":\"Count\",\"Unit\":\"Count\"}");
+        for (String name : new String[]{"P50", "P90", "P99", "P999", "Max"})
+            line.append(",{\"Name\":\"").append(name).append("\",\"Unit\":\"Milliseconds\"}");
+        line.append("]}]},");
+        dimensions(line, key.operation, key.dimension, key.value);
+        return line
+            .append(",\"Count\":").append(histogram.getTotalCount())
+            .append(",\"P50\":").append(millis(histogram.getValueAtPercentile(50)))
+            .append(",\"P90\":").append(millis(histogram.getValueAtPercentile(90)))
+            .append(",\"P99\":").append(millis(histogram.getValueAtPercentile(99)))
+            .append(",\"P999\":").append(millis(histogram.getValueAtPercentile(99.9)))
+            .append(",\"Max\":").append(millis(histogram.getMaxValue()))
+            .append('}').toString();
+    }
+
+    private static String counterLine(long timestamp, String operation, Map<String, Long> deltas) {
+        Long hits = deltas.get("Hits");
+        Long misses = deltas.get("Misses");
+        boolean hitRate = hits != null && misses != null && hits + misses > 0;
+
+        StringBuilder line = header(timestamp, null).append("\"Metrics\":[");
+        for (String name : deltas.keySet())
+            line.append("{\"Name\":\"").append(name).append("\",\"Unit\":\"Count\"},");
+        if (hitRate)
+            line.append("{\"Name\":\"HitRate\",\"Unit\":\"Percent\"},");
+        line.setLength(line.length() - 1);
+        line.append("]}]},");
+        dimensions(line, operation, null, null);
+        deltas.forEach((name, delta) -> line.append(",\"").append(name).append("\":").append(delta));
+        if (hitRate)
+            line.append(",\"HitRate\":").append(100.0 * hits / (hits + misses));
+        return line.append('}').toString();
+    }
+
+    private static StringBuilder header(long timestamp, String dimension) {
+        return new StringBuilder("{\"_aws\":{\"Timestamp\":").append(timestamp)
+            .append(",\"CloudWatchMetrics\":[{\"Namespace\":\"").append(NAMESPACE)
+            .append("\",\"Dimensions\":[[\"Operation\"").append(dimension != null ? ",\"" + dimension + "\"" : "")
+            .append("]],");
+    }
+
+    private static void dimensions(StringBuilder line, String operation, String dimension, String value) {
+        line.append("\"Operation\":\"").append(operation).append('"');
+        if (dimension != null)
+            line.append(",\"").append(dimension).append("\":\"").append(value).append('"');
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static class Counter {
+        private final LongSupplier total;
+        private final boolean      gauge;
+
+        private long reported;
+
+        Counter(LongSupplier total, boolean gauge) {
+            this.total = total;
+            this.gauge = gauge;
+        }
+
+        long delta() {
+            long current = total.getAsLong();
+            if (gauge)
+                return current;
+            long delta = current - reported;
+            reported = current;
+            return delta;
+        }
+    }
+
+    private static class MetricKey {
+        private final String operation;
+        private final String dimension;
+        private final String value;
+
+        MetricKey(String operation, String dimension, String value) {
+            this.operation = operation;
+            this.dimension = dimension;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof MetricKey))
+                return false;
+            MetricKey that = (MetricKey) o;
+            return operation.equals(that.operation)
+                && Objects.equals(dimension, that.dimension)
+                && Objects.equals(value, that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operation, dimension, value);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+}
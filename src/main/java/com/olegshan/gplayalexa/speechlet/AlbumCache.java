@@ -0,0 +1,190 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class AlbumCache {
+    static final int  MAX_TRACKS         = 5000;
+    static final long WRITE_DELAY_MILLIS = SECONDS.toMillis(10);
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final int                         maxTracks;
+    private final Path                        file;
+    private final long                        writeDelayMillis;
+    private final ScheduledThreadPoolExecutor writer;
+    private final AtomicBoolean               dirty     = new AtomicBoolean();
+    private final AtomicLong                  hits      = new AtomicLong();
+    private final AtomicLong                  misses    = new AtomicLong();
+    private final AtomicLong                  evictions = new AtomicLong();
+    private final AtomicLong                  writes    = new AtomicLong();
+
+    private final LinkedHashMap<String, AlbumTracks> albums = new LinkedHashMap<>(16, 0.75f, true);
+    private       int                                trackCount;
+
+    AlbumCache(int maxTracks, Path file) {
+        this(maxTracks, file, WRITE_DELAY_MILLIS);
+    }
+
+    AlbumCache(int maxTracks, Path file, long writeDelayMillis) {
+        this.maxTracks = maxTracks;
+        this.file = file;
+        this.writeDelayMillis = writeDelayMillis;
+        this.writer = file == null ? null : new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "album-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (writer != null)
+            writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        if (file != null)
+            restore();
+    }
+
+    static AlbumCache fromEnvironment() {
+        String file = System.getenv("ALBUM_CACHE_FILE");
+        return new AlbumCache(MAX_TRACKS, file == null || file.isEmpty() ? null : Paths.get(file));
+    }
+
+    void shutdown() {
+        if (writer == null)
+            return;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persist();
+    }
+
+    AlbumTracks get(String albumId, Loader loader) throws IOException {
+        synchronized (albums) {
+            AlbumTracks album = albums.get(albumId);
+            if (album != null) {
+                hits.incrementAndGet();
+                return album;
+            }
+        }
+
+        misses.incrementAndGet();
+        AlbumTracks album = loader.load(albumId);
+        put(album);
+        if (writer != null && dirty.compareAndSet(false, true))
+            scheduleWrite();
+        return album;
+    }
+
+    String stats() {
+        synchronized (albums) {
+            return String.format("Album cache albums: %d, tracks: %d, hits: %d, misses: %d, evictions: %d",
+                albums.size(), trackCount, hits.get(), misses.get(), evictions.get());
+        }
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    long writes() {
+        return writes.get();
+    }
+
+    private void put(AlbumTracks album) {
+        synchronized (albums) {
+            AlbumTracks previous = albums.put(album.albumId(), album);
+            if (previous != null)
+                trackCount -= previous.size();
+            trackCount += album.size();
+
+            Iterator<AlbumTracks> eldest = albums.values().iterator();
+            while (trackCount > maxTracks && albums.size() > 1) {
+                trackCount -= eldest.next().size();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void scheduleWrite() {
+        try {
+            writer.schedule(this::persist, writeDelayMillis, MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Album cache is shut down, not persisting it");
+        }
+    }
+
+    private void persist() {
+        if (!dirty.getAndSet(false))
+            return;
+
+        List<AlbumTracks> snapshot;
+        synchronized (albums) {
+            snapshot = new ArrayList<>(albums.values());
+        }
+
+        try {
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "albums", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (AlbumTracks album : snapshot)
+                    album.writeTo(out);
+            }
+            Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            writes.incrementAndGet();
+        } catch (IOException e) {
+            log.warn("Couldn't persist album cache to {}", file, e);
+        }
+    }
+
+    private void restore() {
+        if (!Files.exists(file))
+            return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                log.info("Ignoring album cache {} written in another format", file);
+                return;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++)
+                put(AlbumTracks.readFrom(in));
+            log.info("Restored {} albums from {}", size, file);
+        } catch (IOException e) {
+            log.warn("Couldn't restore album cache from {}", file, e);
+        }
+    }
+
+    interface Loader {
+        AlbumTracks load(String albumId) throws IOException;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AlbumCache.class);
+}
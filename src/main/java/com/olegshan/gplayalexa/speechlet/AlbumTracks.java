@@ -0,0 +1,179 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+class AlbumTracks extends TrackQueue {
+    static final AlbumTracks EMPTY = new Builder(0).build("", "", "");
+
+    private final String   albumId;
+    private final String   name;
+    private final String   artist;
+    private final String   packed;
+    private final int[]    offsets;
+    private final String[] artists;
+    private final int[]    trackArtists;
+    private final BitSet   missingIds;
+
+    private AlbumTracks(String albumId, String name, String artist, String packed, int[] offsets, String[] artists,
+                        int[] trackArtists, BitSet missingIds) {
+        this.albumId = albumId;
+        this.name = name;
+        this.artist = artist;
+        this.packed = packed;
+        this.offsets = offsets;
+        this.artists = artists;
+        this.trackArtists = trackArtists;
+        this.missingIds = missingIds;
+    }
+
+    static AlbumTracks of(String albumId, String name, String artist, List<Track> tracks) {
+        Builder builder = new Builder(tracks.size());
+        for (Track track : tracks)
+            builder.add(track.getID(), track.getTitle(), track.getArtist());
+        return builder.build(albumId, name, artist);
+    }
+
+    AlbumTracks append(AlbumTracks more) {
+        if (more.isEmpty())
+            return this;
+
+        return new Builder(size() + more.size())
+            .addAll(this)
+            .addAll(more)
+            .build(albumId, name, artist);
+    }
+
+    String albumId() {
+        return albumId;
+    }
+
+    @Override
+    String queueId() {
+        return albumId;
+    }
+
+    @Override
+    String name() {
+        return name;
+    }
+
+    @Override
+    String artist() {
+        return artist;
+    }
+
+    @Override
+    int size() {
+        return trackArtists.length;
+    }
+
+    @Override
+    String trackId(int index) {
+        if (missingIds.get(index))
+            return null;
+        return packed.substring(offsets[2 * index], offsets[2 * index + 1]);
+    }
+
+    @Override
+    String title(int index) {
+        return packed.substring(offsets[2 * index + 1], offsets[2 * index + 2]);
+    }
+
+    @Override
+    String artist(int index) {
+        return artists[trackArtists[index]];
+    }
+
+    @Override
+    boolean hasTrackId(int index, String trackId) {
+        int start = offsets[2 * index];
+        int length = offsets[2 * index + 1] - start;
+        return trackId != null && !missingIds.get(index) && trackId.length() == length && packed.regionMatches(start, trackId, 0, length);
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(albumId);
+        out.writeUTF(name);
+        out.writeUTF(artist);
+        out.writeInt(size());
+        for (int i = 0; i < size(); i++) {
+            String trackId = trackId(i);
+            out.writeBoolean(trackId != null);
+            if (trackId != null)
+                out.writeUTF(trackId);
+            out.writeUTF(title(i));
+            out.writeUTF(artist(i));
+        }
+    }
+
+    static AlbumTracks readFrom(DataInput in) throws IOException {
+        String albumId = in.readUTF();
+        String name = in.readUTF();
+        String artist = in.readUTF();
+        int size = in.readInt();
+        Builder builder = new Builder(size);
+        for (int i = 0; i < size; i++)
+            builder.add(in.readBoolean() ? in.readUTF() : null, in.readUTF(), in.readUTF());
+        return builder.build(albumId, name, artist);
+    }
+
+    private static String text(String value) {
+        return value != null ? value : "";
+    }
+
+    static class Builder {
+        private final StringBuilder        packed      = new StringBuilder();
+        private final List<String>         artists     = new ArrayList<>();
+        private final Map<String, Integer> artistIndex = new HashMap<>();
+        private final BitSet               missingIds  = new BitSet();
+        private       int[]                offsets;
+        private       int[]                trackArtists;
+        private       int                  size;
+
+        Builder(int capacity) {
+            this.offsets = new int[2 * capacity + 1];
+            this.trackArtists = new int[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        Builder addAll(AlbumTracks tracks) {
+            for (int i = 0; i < tracks.size(); i++)
+                add(tracks.trackId(i), tracks.title(i), tracks.artist(i));
+            return this;
+        }
+
+        private void add(String trackId, String title, String artist) {
+            if (size == trackArtists.length) {
+                int capacity = Math.max(16, 2 * size);
+                offsets = Arrays.copyOf(offsets, 2 * capacity + 1);
+                trackArtists = Arrays.copyOf(trackArtists, capacity);
+            }
+            if (trackId == null)
+                missingIds.set(size);
+            packed.append(text(trackId));
+            offsets[2 * size + 1] = packed.length();
+            packed.append(text(title));
+            offsets[2 * size + 2] = packed.length();
+            trackArtists[size++] = artistIndex.computeIfAbsent(text(artist), key -> {
+                artists.add(key);
+                return artists.size() - 1;
+            });
+        }
+
+        AlbumTracks build(String albumId, String name, String artist) {
+            return new AlbumTracks(text(albumId), text(name), text(artist), packed.toString(),
+                offsets.length == 2 * size + 1 ? offsets : Arrays.copyOf(offsets, 2 * size + 1),
+                artists.toArray(new String[0]),
+                trackArtists.length == size ? trackArtists : Arrays.copyOf(trackArtists, size),
+                (BitSet) missingIds.clone());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Album;
+import com.github.felixgail.gplaymusic.model.Artist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+class DiscographyLoader {
+    static final int THREADS     = 4;
+    static final int MAX_ARTISTS = 32;
+
+    private final ExecutorService executor;
+    private final AlbumLoader     albums;
+
+    private final Map<String, Discography> discographies = new LinkedHashMap<String, Discography>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Discography> eldest) {
+            return size() > MAX_ARTISTS;
+        }
+    };
+
+    DiscographyLoader(AlbumLoader albums) {
+        this(Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "discography-loader");
+            thread.setDaemon(true);
+            return thread;
+        }), albums);
+    }
+
+    DiscographyLoader(ExecutorService executor, AlbumLoader albums) {
+        this.executor = executor;
+        this.albums = albums;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    Discography load(String artistId, ArtistLoader artists) throws IOException {
+        synchronized (discographies) {
+            Discography discography = discographies.get(artistId);
+            if (discography != null)
+                return discography;
+        }
+
+        Artist artist = artists.load(artistId);
+        Set<String> albumIds = new LinkedHashSet<>();
+        for (Album album : artist.getAlbums().orElse(Collections.emptyList())) {
+            if (album.getAlbumId() != null)
+                albumIds.add(album.getAlbumId());
+        }
+
+        Discography discography = new Discography(artistId, artist.getName());
+        synchronized (discographies) {
+            Discography loading = discographies.putIfAbsent(artistId, discography);
+            if (loading != null)
+                return loading;
+        }
+
+        log.info("Loading {} albums of {}", albumIds.size(), artist.getName());
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<Void> loaded = CompletableFuture.completedFuture(null);
+        for (String albumId : albumIds) {
+            CompletableFuture<AlbumTracks> album =
+                CompletableFuture.supplyAsync(() -> loadAlbum(albumId, failures), executor);
+            loaded = loaded.thenCombine(album, (ignored, next) -> {
+                discography.append(next);
+                return null;
+            });
+        }
+        loaded.whenComplete((ignored, e) -> {
+            if (e != null || failures.get() > 0)
+                forget(artistId, discography, e != null ? albumIds.size() : failures.get());
+            discography.complete();
+        });
+        return discography;
+    }
+
+    Discography find(String artistId) {
+        synchronized (discographies) {
+            return discographies.get(artistId);
+        }
+    }
+
+    private void forget(String artistId, Discography discography, int failures) {
+        synchronized (discographies) {
+            discographies.remove(artistId, discography);
+        }
+        log.info("{} albums of {} failed to load, the discography will be loaded again on the next request",
+            failures, artistId);
+    }
+
+    private AlbumTracks loadAlbum(String albumId, AtomicInteger failures) {
+        try {
+            return albums.load(albumId);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.warn("Couldn't load album {}, skipping it", albumId, e);
+            return AlbumTracks.EMPTY;
+        }
+    }
+
+    interface AlbumLoader {
+        AlbumTracks load(String albumId) throws IOException;
+    }
+
+    interface ArtistLoader {
+        Artist load(String artistId) throws IOException;
+    }
+
+    static class Discography {
+        private final String              artistId;
+        private final String              name;
+        private final AlbumTracks.Builder builder = new AlbumTracks.Builder(0);
+        private       AlbumTracks         tracks;
+        private       boolean             complete;
+
+        private Discography(String artistId, String name) {
+            this.artistId = artistId;
+            this.name = name;
+        }
+
+        synchronized AlbumTracks tracks() {
+            if (tracks == null)
+                tracks = builder.build(artistId, name, name);
+            return tracks;
+        }
+
+        synchronized boolean isComplete() {
+            return complete;
+        }
+
+        synchronized AlbumTracks awaitMoreThan(int size, long timeoutNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (builder.size() <= size && !complete) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+                NANOSECONDS.timedWait(this, remaining);
+            }
+            return tracks();
+        }
+
+        private synchronized void append(AlbumTracks album) {
+            if (album.isEmpty())
+                return;
+            builder.addAll(album);
+            tracks = null;
+            notifyAll();
+        }
+
+        private synchronized void complete() {
+            complete = true;
+            notifyAll();
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DiscographyLoader.class);
+}
@@ -0,0 +1,107 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.olegshan.gplayalexa.api.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class FanOutSearch {
+    static final int  THREADS        = 6;
+    static final int  QUEUE_CAPACITY = 64;
+    static final long BUDGET_MILLIS  = SECONDS.toMillis(2);
+    static final long TIMEOUT_MILLIS = SECONDS.toMillis(5);
+
+    private final ExecutorService executor;
+    private final long            budgetMillis;
+    private final long            timeoutMillis;
+
+    FanOutSearch() {
+        this(boundedExecutor(), BUDGET_MILLIS, TIMEOUT_MILLIS);
+    }
+
+    FanOutSearch(ExecutorService executor, long budgetMillis, long timeoutMillis) {
+        this.executor = executor;
+        this.budgetMillis = budgetMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    SearchMatch search(String query, List<Source> sources) throws InterruptedException {
+        long start = System.nanoTime();
+        Deadline deadline = Deadline.current();
+        long budget = deadline != null ? Math.min(budgetMillis, deadline.remainingMillis()) : budgetMillis;
+        long timeout = deadline != null ? Math.min(timeoutMillis, deadline.remainingMillis()) : timeoutMillis;
+
+        BlockingQueue<List<SearchMatch>> completed = new LinkedBlockingQueue<>();
+        for (Source source : sources) {
+            executor.execute(Deadline.propagate(() -> {
+                List<SearchMatch> matches = Collections.emptyList();
+                try {
+                    matches = source.search(query);
+                } catch (Exception e) {
+                    log.error("Search for {} failed", query, e);
+                } finally {
+                    completed.add(matches);
+                }
+            }));
+        }
+
+        SearchMatch best = null;
+        for (int received = 0; received < sources.size(); received++) {
+            long elapsedMillis = MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            long waitMillis = (best != null ? budget : timeout) - elapsedMillis;
+            List<SearchMatch> matches = waitMillis > 0 ? completed.poll(waitMillis, MILLISECONDS) : null;
+            if (matches == null)
+                break;
+
+            for (SearchMatch match : matches) {
+                if (match.isAcceptable() && (best == null || SearchMatch.BEST_FIRST.compare(match, best) < 0))
+                    best = match;
+            }
+            if (best != null && best.score() >= SearchMatch.EXACT_MATCH)
+                break;
+        }
+
+        log.info("Best match for {}: {}", query, best);
+        return best;
+    }
+
+    static <T> List<SearchMatch> rank(String query, List<T> results, Ranking<T> ranking) {
+        List<SearchMatch> matches = new ArrayList<>(results.size());
+        for (int rank = 0; rank < results.size(); rank++)
+            matches.add(ranking.match(query, results.get(rank), rank));
+        return matches;
+    }
+
+    private static ExecutorService boundedExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "search-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    interface Source {
+        List<SearchMatch> search(String query) throws IOException;
+    }
+
+    interface Ranking<T> {
+        SearchMatch match(String query, T result, int rank);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FanOutSearch.class);
+}
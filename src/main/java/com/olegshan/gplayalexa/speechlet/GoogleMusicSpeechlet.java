@@ -7,43 +7,105 @@ import com.amazon.speech.speechlet.interfaces.audioplayer.*;
 import com.amazon.speech.speechlet.interfaces.audioplayer.Error;
 import com.amazon.speech.speechlet.interfaces.audioplayer.directive.PlayDirective;
 import com.amazon.speech.speechlet.interfaces.audioplayer.request.*;
+import com.amazon.speech.speechlet.interfaces.system.SystemInterface;
+import com.amazon.speech.speechlet.interfaces.system.SystemState;
 import com.github.felixgail.gplaymusic.api.GPlayMusic;
 import com.github.felixgail.gplaymusic.model.Album;
+import com.github.felixgail.gplaymusic.model.Artist;
 import com.github.felixgail.gplaymusic.model.Track;
-import com.github.felixgail.gplaymusic.model.enums.ResultType;
-import com.github.felixgail.gplaymusic.model.enums.StreamQuality;
-import com.github.felixgail.gplaymusic.model.requests.SearchTypes;
-import com.github.felixgail.gplaymusic.util.TokenProvider;
-import org.apache.log4j.PropertyConfigurator;
+import com.olegshan.gplayalexa.api.Deadline;
+import com.olegshan.gplayalexa.api.GoogleMusicClient;
+import com.olegshan.gplayalexa.logging.LogSampler;
+import com.olegshan.gplayalexa.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import svarzee.gps.gpsoauth.AuthToken;
-import svarzee.gps.gpsoauth.Gpsoauth;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 import static com.olegshan.gplayalexa.speechlet.SpeechletConstants.*;
 import static com.olegshan.gplayalexa.speechlet.SpeechletResponses.*;
 import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class GoogleMusicSpeechlet implements SpeechletV2, AudioPlayer {
 
-    private GPlayMusic  api;
-    private List<Track> tracks = new ArrayList<>();
-    private int         currentTrack;
+    static final int LOADED_TRACKS   = 500;
+    static final int FAN_OUT_RESULTS = 5;
+
+    private static final Set<String> METRIC_INTENTS = new HashSet<>(Arrays.asList(
+        SINGLE_SONG, ALBUM, ARTIST, PLAY_ANYTHING, SHUFFLE_LIBRARY,
+        "AMAZON.PauseIntent", "AMAZON.StopIntent", "AMAZON.CancelIntent",
+        "AMAZON.NextIntent", "AMAZON.PreviousIntent"
+    ));
+    private static final String      OTHER_INTENT   = "Other";
+
+    private final GoogleMusicClient client;
+    private final Metrics           metrics = Metrics.metrics();
+
+    private final Map<String, Track> loadedTracks = new LinkedHashMap<String, Track>(LOADED_TRACKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Track> eldest) {
+            return size() > LOADED_TRACKS;
+        }
+    };
+
+    private final StreamUrlCache           streamUrls;
+    private final SearchResultCache<Track> songSearches  = new SearchResultCache<>("Song search");
+    private final SearchResultCache<Album> albumSearches = new SearchResultCache<>("Album search");
+    private final AlbumCache               albums        = AlbumCache.fromEnvironment();
+    private final SessionRegistry          sessions;
+
+    private final SearchResultCache<Track>  anyTrackSearches  = new SearchResultCache<>("Any track search");
+    private final SearchResultCache<Album>  anyAlbumSearches  = new SearchResultCache<>("Any album search");
+    private final SearchResultCache<Artist> anyArtistSearches = new SearchResultCache<>("Any artist search");
+    private final FanOutSearch              fanOutSearch      = new FanOutSearch();
+    private final SearchResultCache<Artist> artistSearches    = new SearchResultCache<>("Artist search");
+    private final DiscographyLoader         discographies     = new DiscographyLoader(
+        albumId -> albums.get(albumId, this::loadAlbum));
+    private final Library                   library;
+    private final LogSampler                playbackEvents    = LogSampler.fromEnvironment();
+
+    public GoogleMusicSpeechlet(Supplier<GPlayMusic> api) {
+        this(api, Library.fromEnvironment());
+    }
+
+    GoogleMusicSpeechlet(Supplier<GPlayMusic> api, Library library) {
+        this.client = new GoogleMusicClient(api, metrics);
+        this.streamUrls = new StreamUrlCache(this::loadTrack, client::getStreamUrl);
+        this.sessions = new SessionRegistry(session -> streamUrls.dequeue(session.key()));
+        this.library = library;
+        registerCacheMetrics();
+        library.start(client::getLibraryTracks);
+    }
+
+    public void shutdown() {
+        library.shutdown();
+        streamUrls.shutdown();
+        discographies.shutdown();
+        fanOutSearch.shutdown();
+        albums.shutdown();
+        client.shutdown();
+    }
 
     @Override
     public void onSessionStarted(SpeechletRequestEnvelope<SessionStartedRequest> requestEnvelope) {
-        prepareApi();
         logMethodStart("onSessionStarted", requestEnvelope);
     }
 
     @Override
     public SpeechletResponse onLaunch(SpeechletRequestEnvelope<LaunchRequest> requestEnvelope) {
         logMethodStart("onLaunch", requestEnvelope);
-        return newAskResponse(WELCOME_TEXT);
+        return WELCOME_RESPONSE;
     }
 
     @Override
@@ -53,66 +115,147 @@ public class GoogleMusicSpeechlet implements SpeechletV2, AudioPlayer {
         String name = intent.getName();
         log.info("Requested intent: {}", name);
 
+        long start = System.nanoTime();
+        try (Deadline.Scope ignored = Deadline.forRequest(requestEnvelope.getRequest().getTimestamp()).enter()) {
+            PlaybackSession session = sessions.get(sessionKey(requestEnvelope));
+            if ("AMAZON.NextIntent".equals(name) || "AMAZON.PreviousIntent".equals(name))
+                awaitDiscography(session, audioPlayerToken(requestEnvelope), "AMAZON.NextIntent".equals(name));
+            synchronized (session) {
+                return onIntent(session, intent, requestEnvelope);
+            }
+        } finally {
+            metrics.latency("onIntent", "Intent", METRIC_INTENTS.contains(name) ? name : OTHER_INTENT).recordSince(start);
+        }
+    }
+
+    private SpeechletResponse onIntent(PlaybackSession session, Intent intent,
+                                       SpeechletRequestEnvelope<IntentRequest> requestEnvelope) {
+        String name = intent.getName();
         switch (name) {
             case SINGLE_SONG:
                 String song = intent.getSlot(SONG_SLOT).getValue();
                 try {
-                    return playSingleSong(song);
+                    return playSingleSong(session, song);
                 } catch (Exception e) {
                     log.error("Couldn't play {}", song, e);
-                    return newAskResponse(ERROR);
+                    return errorResponse(e);
                 }
             case ALBUM:
                 String album = intent.getSlot(ALBUM_SLOT).getValue();
                 try {
-                    return playAlbum(album);
+                    return playAlbum(session, album);
                 } catch (Exception e) {
                     log.error("Couldn't play album {}", album, e);
-                    return newAskResponse(ERROR);
+                    return errorResponse(e);
+                }
+            case ARTIST:
+                String artist = intent.getSlot(ARTIST_SLOT).getValue();
+                try {
+                    return playArtist(session, artist);
+                } catch (Exception e) {
+                    log.error("Couldn't play artist {}", artist, e);
+                    return errorResponse(e);
+                }
+            case PLAY_ANYTHING:
+                String query = intent.getSlot(QUERY_SLOT).getValue();
+                try {
+                    return playAnything(session, query);
+                } catch (Exception e) {
+                    log.error("Couldn't play {}", query, e);
+                    return errorResponse(e);
                 }
+            case SHUFFLE_LIBRARY:
+                return shuffleLibrary(session);
+            case "AMAZON.PauseIntent":
             case "AMAZON.StopIntent":
             case "AMAZON.CancelIntent":
-                return stopResponse();
+                streamUrls.dequeue(session.key());
+                return STOP_RESPONSE;
             case "AMAZON.NextIntent":
-                return playNextSong(++currentTrack);
+                restoreQueue(session, audioPlayerToken(requestEnvelope));
+                growQueue(session);
+                try {
+                    return playNextSong(session, session.currentTrack() + 1);
+                } catch (RuntimeException e) {
+                    log.error("Couldn't play the next track", e);
+                    return errorResponse(e);
+                }
             case "AMAZON.PreviousIntent":
-                return playPreviousSong(--currentTrack);
+                restoreQueue(session, audioPlayerToken(requestEnvelope));
+                growQueue(session);
+                try {
+                    return playPreviousSong(session, session.currentTrack() - 1);
+                } catch (RuntimeException e) {
+                    log.error("Couldn't play the previous track", e);
+                    return errorResponse(e);
+                }
             default:
                 log.error("Unexpected intent: " + name);
-                return newAskResponse(WRONG_REQUEST);
+                return WRONG_REQUEST_RESPONSE;
         }
     }
 
     @Override
     public SpeechletResponse onPlaybackNearlyFinished(SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest> requestEnvelope) {
-        logMethodStart("onPlaybackNearlyFinished", requestEnvelope);
-
-        if (tracks.size() <= currentTrack + 1) {
-            log.info("No next track will be played. Tracks list size: {}, current track: {}", tracks.size(), currentTrack);
-            return null;
+        boolean logged = logPlaybackEvent("onPlaybackNearlyFinished", requestEnvelope);
+        long start = System.nanoTime();
+        try (Deadline.Scope ignored = Deadline.forRequest(requestEnvelope.getRequest().getTimestamp()).enter()) {
+            return playbackNearlyFinished(requestEnvelope, logged);
+        } finally {
+            metrics.latency("onPlaybackNearlyFinished").recordSince(start);
         }
+    }
 
-        Track track = tracks.get(currentTrack + 1);
-        String previousToken = tracks.get(currentTrack).getID();
-        Directive directive = preparePlayDirective(track, PlayBehavior.ENQUEUE, previousToken);
-
-        SpeechletResponse response = new SpeechletResponse();
-        response.setDirectives(singletonList(directive));
-
-        currentTrack++;
-        log.info("Next song to play: {}", track.getTitle());
-        return response;
+    private SpeechletResponse playbackNearlyFinished(SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest> requestEnvelope,
+                                                     boolean logged) {
+        String token = requestEnvelope.getRequest().getToken();
+
+        PlaybackSession session = sessions.get(sessionKey(requestEnvelope));
+        awaitDiscography(session, token, true);
+        synchronized (session) {
+            restoreQueue(session, token);
+            growQueue(session);
+
+            TrackQueue tracks = session.tracks();
+            int currentTrack = session.currentTrack();
+            if (tracks.size() <= currentTrack + 1) {
+                streamUrls.dequeue(session.key());
+                if (logged)
+                    log.info("No next track will be played. Tracks list size: {}, current track: {}", tracks.size(), currentTrack);
+                return null;
+            }
+
+            int nextTrack = currentTrack + 1;
+            String previousToken = token != null ? token : queueToken(session, currentTrack);
+            Directive directive;
+            try {
+                directive = preparePlayDirective(session, nextTrack, PlayBehavior.ENQUEUE, previousToken);
+            } catch (RuntimeException e) {
+                log.error("Couldn't enqueue the next track {}", tracks.title(nextTrack), e);
+                return null;
+            }
+
+            SpeechletResponse response = new SpeechletResponse();
+            response.setDirectives(singletonList(directive));
+
+            session.moveTo(nextTrack);
+            streamUrls.prefetch(session.key(), tracks, nextTrack + 1);
+            if (logged)
+                log.info("Next song to play: {}", tracks.title(nextTrack));
+            return response;
+        }
     }
 
     @Override
     public SpeechletResponse onPlaybackStarted(SpeechletRequestEnvelope<PlaybackStartedRequest> requestEnvelope) {
-        logMethodStart("onPlaybackStarted", requestEnvelope);
+        logPlaybackEvent("onPlaybackStarted", requestEnvelope);
         return null;
     }
 
     @Override
     public SpeechletResponse onPlaybackStopped(SpeechletRequestEnvelope<PlaybackStoppedRequest> requestEnvelope) {
-        logMethodStart("onPlaybackStopped", requestEnvelope);
+        logPlaybackEvent("onPlaybackStopped", requestEnvelope);
+        streamUrls.dequeue(sessionKey(requestEnvelope));
         return null;
     }
 
@@ -126,7 +269,7 @@ public class GoogleMusicSpeechlet implements SpeechletV2, AudioPlayer {
 
     @Override
     public SpeechletResponse onPlaybackFinished(SpeechletRequestEnvelope<PlaybackFinishedRequest> requestEnvelope) {
-        logMethodStart("onPlaybackFinished", requestEnvelope);
+        logPlaybackEvent("onPlaybackFinished", requestEnvelope);
         return null;
     }
 
@@ -135,86 +278,267 @@ public class GoogleMusicSpeechlet implements SpeechletV2, AudioPlayer {
         logMethodStart("onSessionEnded", requestEnvelope);
     }
 
-    private SpeechletResponse playSingleSong(String songRequest) throws Exception {
+    private SpeechletResponse playSingleSong(PlaybackSession session, String songRequest) throws Exception {
         log.info("Single song request: {}", songRequest);
-        tracks.clear();
-        currentTrack = 0;
+        session.play(AlbumTracks.EMPTY, 0);
+        streamUrls.dequeue(session.key());
+
+        SearchMatch libraryMatch = library.find(songRequest);
+        if (libraryMatch != null)
+            return playLibraryTrack(libraryMatch);
 
-        List<Track> trackList = api.getTrackApi().search(songRequest, 1);
+        List<Track> trackList = songSearches.get(songRequest, query -> client.searchTracks(query, 1));
+        if (log.isDebugEnabled())
+            log.debug(songSearches.stats());
         if (trackList.isEmpty())
             return songNotFoundResponse(songRequest);
 
-        Track track = trackList.get(0);
+        return playTrack(trackList.get(0));
+    }
+
+    private SpeechletResponse playTrack(Track track) {
         Directive directive = preparePlayDirective(track);
         return playResponse(track.getTitle(), track.getArtist(), directive);
     }
 
-    private SpeechletResponse playAlbum(String albumRequest) throws Exception {
+    private SpeechletResponse playLibraryTrack(SearchMatch match) {
+        log.info("Found {} in the library", match);
+        String token = QueueToken.song(match.id()).encode();
+        Directive directive = preparePlayDirective(token, getStreamUrl(match.id()), PlayBehavior.REPLACE_ALL, null);
+        return playResponse(match.title(), match.artist(), directive);
+    }
+
+    private SpeechletResponse playAlbum(PlaybackSession session, String albumRequest) throws Exception {
         log.info("Album request: {}", albumRequest);
 
-        List<Album> albums = api.search(albumRequest, 1, new SearchTypes(ResultType.ALBUM)).getAlbums();
+        List<Album> albums = albumSearches.get(albumRequest, query -> client.searchAlbums(query, 1));
+        if (log.isDebugEnabled())
+            log.debug(albumSearches.stats());
         if (albums.isEmpty())
             return albumNotFoundResponse(albumRequest);
 
-        Album album = api.getAlbum(albums.get(0).getAlbumId(), true);
+        return playQueue(session, QueueToken.ALBUM, albums.get(0).getAlbumId());
+    }
+
+    private SpeechletResponse playArtist(PlaybackSession session, String artistRequest) throws Exception {
+        log.info("Artist request: {}", artistRequest);
 
-        tracks = album.getTracks().orElseThrow(() -> new RuntimeException("No tracks in album " + album.getName()));
-        currentTrack = 0;
+        List<Artist> artists = artistSearches.get(artistRequest, query -> client.searchArtists(query, 1));
+        if (log.isDebugEnabled())
+            log.debug(artistSearches.stats());
+        String artistId = artists.isEmpty() ? null : artists.get(0).getArtistId().orElse(null);
+        if (artistId == null)
+            return artistNotFoundResponse(artistRequest);
 
-        Directive directive = preparePlayDirective(tracks.get(currentTrack));
-        return playResponse("album " + album.getName(), album.getAlbumArtist(), directive);
+        return playQueue(session, QueueToken.DISCOGRAPHY, artistId);
     }
 
-    private SpeechletResponse playNextSong(int trackNumber) {
+    private SpeechletResponse playAnything(PlaybackSession session, String request) throws Exception {
+        log.info("Play anything request: {}", request);
+
+        SearchMatch match = fanOutSearch.search(request, Arrays.asList(
+            this::libraryMatches,
+            query -> FanOutSearch.rank(query,
+                anyTrackSearches.get(query, q -> client.searchTracks(q, FAN_OUT_RESULTS)), SearchMatch::track),
+            query -> FanOutSearch.rank(query,
+                anyAlbumSearches.get(query, q -> client.searchAlbums(q, FAN_OUT_RESULTS)), SearchMatch::album),
+            query -> FanOutSearch.rank(query,
+                anyArtistSearches.get(query, q -> client.searchArtists(q, FAN_OUT_RESULTS)), SearchMatch::artist)
+        ));
+        if (match == null)
+            return nothingFoundResponse(request);
+
+        switch (match.type()) {
+            case TRACK:
+                session.play(AlbumTracks.EMPTY, 0);
+                streamUrls.dequeue(session.key());
+                return match.track() != null ? playTrack(match.track()) : playLibraryTrack(match);
+            case ALBUM:
+                return playQueue(session, QueueToken.ALBUM, match.id());
+            default:
+                return playQueue(session, QueueToken.DISCOGRAPHY, match.id());
+        }
+    }
+
+    private List<SearchMatch> libraryMatches(String query) {
+        SearchMatch match = library.find(query);
+        return match != null ? singletonList(match) : Collections.emptyList();
+    }
+
+    private SpeechletResponse playQueue(PlaybackSession session, String queueType, String queueId) throws IOException {
+        TrackQueue tracks = loadQueue(queueType, queueId, 0);
+        if (log.isDebugEnabled())
+            log.debug(this.albums.stats());
         if (tracks.isEmpty())
-            return emptyListResponse("next");
+            return emptyListResponse("the first");
 
-        Track track;
-        if (tracks.size() <= trackNumber) {
-            currentTrack = 0;
-            track = tracks.get(currentTrack);
+        session.play(queueType, tracks, 0);
+        streamUrls.prefetch(session.key(), tracks, 1);
+
+        Directive directive = preparePlayDirective(session, 0);
+        String item = QueueToken.DISCOGRAPHY.equals(queueType) ? "all albums" : "album " + tracks.name();
+        return playResponse(item, tracks.artist(), directive);
+    }
+
+    private SpeechletResponse shuffleLibrary(PlaybackSession session) {
+        LibraryIndex index = library.index();
+        if (index.isEmpty())
+            return emptyListResponse("a shuffled");
+
+        TrackQueue tracks = new ShuffledQueue(index, ThreadLocalRandom.current().nextLong());
+        log.info("Shuffling {} library tracks", tracks.size());
+        session.play(QueueToken.SHUFFLE, tracks, 0);
+        streamUrls.prefetch(session.key(), tracks, 1);
+
+        Directive directive = preparePlayDirective(session, 0);
+        return playResponse(tracks.title(0), tracks.artist(0), directive);
+    }
+
+    private TrackQueue loadQueue(String queueType, String queueId, int position) throws IOException {
+        if (QueueToken.SHUFFLE.equals(queueType))
+            return new ShuffledQueue(library.index(), ShuffledQueue.seed(queueId));
+        if (QueueToken.DISCOGRAPHY.equals(queueType))
+            return loadDiscography(queueId, position);
+        return albums.get(queueId, this::loadAlbum);
+    }
+
+    private AlbumTracks loadDiscography(String artistId, int position) throws IOException {
+        DiscographyLoader.Discography discography = discographies.load(artistId, client::getArtistWithAlbums);
+        try {
+            return discography.awaitMoreThan(position, remainingNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading albums of artist " + artistId);
+        }
+    }
+
+    private void awaitDiscography(PlaybackSession session, String token, boolean next) {
+        String artistId;
+        int position;
+        QueueToken queueToken = QueueToken.parse(token);
+        if (queueToken != null) {
+            if (!QueueToken.DISCOGRAPHY.equals(queueToken.type()))
+                return;
+            artistId = queueToken.queueId();
+            position = next ? queueToken.position() + 1 : 0;
         } else {
-            track = tracks.get(trackNumber);
+            synchronized (session) {
+                if (!QueueToken.DISCOGRAPHY.equals(session.queueType()))
+                    return;
+                artistId = session.tracks().queueId();
+                position = next ? session.currentTrack() + 1 : 0;
+            }
         }
 
-        Directive directive = preparePlayDirective(track);
-        return playResponse(track.getTitle(), track.getArtist(), directive);
+        try {
+            discographies.load(artistId, client::getArtistWithAlbums).awaitMoreThan(position, remainingNanos());
+        } catch (IOException e) {
+            log.warn("Couldn't load albums of artist {}", artistId, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private SpeechletResponse playPreviousSong(int trackNumber) {
-        if (tracks.isEmpty())
-            return emptyListResponse("previous");
+    private void growQueue(PlaybackSession session) {
+        if (!QueueToken.DISCOGRAPHY.equals(session.queueType()))
+            return;
+        DiscographyLoader.Discography discography = discographies.find(session.tracks().queueId());
+        if (discography == null)
+            return;
+
+        AlbumTracks tracks = discography.tracks();
+        if (tracks.size() > session.tracks().size()) {
+            session.play(QueueToken.DISCOGRAPHY, tracks, session.currentTrack());
+            streamUrls.queue(session.key(), tracks, session.currentTrack());
+            log.info("Queue of {} grew to {} tracks", tracks.name(), tracks.size());
+        }
+    }
+
+    private static long remainingNanos() {
+        Deadline deadline = Deadline.current();
+        return deadline != null ? deadline.remainingNanos() : MILLISECONDS.toNanos(Deadline.ALEXA_TIMEOUT_MILLIS);
+    }
+
+    private AlbumTracks loadAlbum(String albumId) throws IOException {
+        Album album = client.getAlbum(albumId);
+
+        List<Track> albumTracks = album.getTracks()
+            .orElseThrow(() -> new RuntimeException("No tracks in album " + album.getName()));
 
+        synchronized (loadedTracks) {
+            for (Track track : albumTracks)
+                loadedTracks.put(track.getID(), track);
+        }
+
+        return AlbumTracks.of(albumId, album.getName(), album.getAlbumArtist(), albumTracks);
+    }
+
+    private Track loadTrack(String trackId) throws IOException {
         Track track;
-        if (trackNumber < 0) {
-            currentTrack = tracks.size() - 1;
-            track = tracks.get(currentTrack);
-        } else {
-            track = tracks.get(trackNumber);
+        synchronized (loadedTracks) {
+            track = loadedTracks.get(trackId);
         }
+        if (track != null)
+            return track;
 
-        Directive directive = preparePlayDirective(track);
-        return playResponse(track.getTitle(), track.getArtist(), directive);
+        track = client.getTrack(trackId);
+        synchronized (loadedTracks) {
+            loadedTracks.put(trackId, track);
+        }
+        return track;
+    }
+
+    private SpeechletResponse playNextSong(PlaybackSession session, int trackNumber) {
+        TrackQueue tracks = session.tracks();
+        if (tracks.isEmpty())
+            return emptyListResponse("next");
+
+        int currentTrack = tracks.size() <= trackNumber ? 0 : trackNumber;
+        Directive directive = preparePlayDirective(session, currentTrack);
+        session.moveTo(currentTrack);
+        streamUrls.prefetch(session.key(), tracks, currentTrack + 1);
+        return playResponse(tracks.title(currentTrack), tracks.artist(currentTrack), directive);
+    }
+
+    private SpeechletResponse playPreviousSong(PlaybackSession session, int trackNumber) {
+        TrackQueue tracks = session.tracks();
+        if (tracks.isEmpty())
+            return emptyListResponse("previous");
+
+        int currentTrack = trackNumber < 0 ? tracks.size() - 1 : trackNumber;
+        Directive directive = preparePlayDirective(session, currentTrack);
+        session.moveTo(currentTrack);
+        return playResponse(tracks.title(currentTrack), tracks.artist(currentTrack), directive);
     }
 
     private String getStreamUrl(Track track) {
-        try {
-            return track.getStreamURL(StreamQuality.HIGH).toString();
-        } catch (IOException e) {
-            log.error("Error getting stream url for track {} ", track.getTitle());
-            throw new RuntimeException(e);
-        }
+        return streamUrls.get(track);
+    }
+
+    private String getStreamUrl(String trackId) {
+        return streamUrls.get(trackId);
     }
 
     private Directive preparePlayDirective(Track track) {
-        return preparePlayDirective(track, PlayBehavior.REPLACE_ALL, null);
+        String token = QueueToken.song(track.getID()).encode();
+        return preparePlayDirective(token, getStreamUrl(track), PlayBehavior.REPLACE_ALL, null);
+    }
+
+    private Directive preparePlayDirective(PlaybackSession session, int trackNumber) {
+        return preparePlayDirective(session, trackNumber, PlayBehavior.REPLACE_ALL, null);
     }
 
-    private Directive preparePlayDirective(Track track, PlayBehavior playBehavior, String previousToken) {
+    private Directive preparePlayDirective(PlaybackSession session, int trackNumber, PlayBehavior playBehavior,
+                                           String previousToken) {
+        String url = getStreamUrl(session.tracks().trackId(trackNumber));
+        return preparePlayDirective(queueToken(session, trackNumber), url, playBehavior, previousToken);
+    }
+
+    private Directive preparePlayDirective(String token, String url, PlayBehavior playBehavior, String previousToken) {
         Stream stream = new Stream();
-        stream.setUrl(getStreamUrl(track));
+        stream.setUrl(url);
         stream.setExpectedPreviousToken(previousToken);
-        stream.setToken(track.getID());
+        stream.setToken(token);
 
         AudioItem song = new AudioItem();
         song.setStream(stream);
@@ -225,32 +549,102 @@ public class GoogleMusicSpeechlet implements SpeechletV2, AudioPlayer {
         return directive;
     }
 
-    private void prepareApi() {
-        if (api != null)
+    private String queueToken(PlaybackSession session, int trackNumber) {
+        TrackQueue tracks = session.tracks();
+        return QueueToken.queue(session.queueType(), tracks.queueId(), trackNumber, tracks.trackId(trackNumber)).encode();
+    }
+
+    private void restoreQueue(PlaybackSession session, String token) {
+        QueueToken queueToken = QueueToken.parse(token);
+        if (queueToken == null)
             return;
 
-        prepareLogger();
+        if (!queueToken.isQueue()) {
+            session.play(AlbumTracks.EMPTY, 0);
+            streamUrls.dequeue(session.key());
+            return;
+        }
 
-        AuthToken token = null;
         try {
-            token = TokenProvider.provideToken(System.getenv("USER_NAME"), System.getenv("USER_PASSWORD"), System.getenv("IMEI"));
-        } catch (IOException | Gpsoauth.TokenRequestFailed e) {
-            log.error("Error while auth token generating", e);
+            TrackQueue tracks = session.tracks();
+            boolean restored = !queueToken.type().equals(session.queueType())
+                || !queueToken.queueId().equals(tracks.queueId());
+            if (restored)
+                tracks = loadQueue(queueToken.type(), queueToken.queueId(), queueToken.position());
+            int currentTrack = tracks.indexOf(queueToken.trackId(), queueToken.position());
+            session.play(queueToken.type(), tracks, currentTrack);
+            if (restored) {
+                streamUrls.queue(session.key(), tracks, currentTrack);
+                log.info("Restored {} queue {} from token", queueToken.type(), tracks.name());
+            }
+        } catch (Exception e) {
+            log.error("Couldn't restore queue from token {}", token, e);
         }
+    }
+
+    private String audioPlayerToken(SpeechletRequestEnvelope<?> requestEnvelope) {
+        Context context = requestEnvelope.getContext();
+        if (context == null || !context.hasState(AudioPlayerInterface.class))
+            return null;
+        return context.getState(AudioPlayerInterface.class, AudioPlayerState.class).getToken();
+    }
+
+    private void registerCacheMetrics() {
+        metrics.counter("StreamUrlCache", "Hits", streamUrls::hits);
+        metrics.counter("StreamUrlCache", "Misses", streamUrls::misses);
+        metrics.counter("StreamUrlCache", "StaleHits", streamUrls::staleHits);
+        metrics.counter("StreamUrlCache", "Expirations", streamUrls::expirations);
+        metrics.counter("StreamUrlCache", "Refreshes", streamUrls::refreshes);
+        registerSearchMetrics("TrackSearchCache", songSearches);
+        registerSearchMetrics("AlbumSearchCache", albumSearches);
+        registerSearchMetrics("ArtistSearchCache", artistSearches);
+        registerSearchMetrics("AnyTrackSearchCache", anyTrackSearches);
+        registerSearchMetrics("AnyAlbumSearchCache", anyAlbumSearches);
+        registerSearchMetrics("AnyArtistSearchCache", anyArtistSearches);
+        metrics.counter("AlbumCache", "Hits", albums::hits);
+        metrics.counter("AlbumCache", "Misses", albums::misses);
+        metrics.counter("AlbumCache", "Evictions", albums::evictions);
+        metrics.counter("Library", "Hits", library::hits);
+        metrics.counter("Library", "Misses", library::misses);
+        metrics.counter("Sessions", "Evictions", sessions::evictions);
+    }
 
-        api = new GPlayMusic.Builder()
-            .setAuthToken(token)
-            .build();
+    private void registerSearchMetrics(String operation, SearchResultCache<?> cache) {
+        metrics.counter(operation, "Hits", cache::hits);
+        metrics.counter(operation, "Misses", cache::misses);
+        metrics.counter(operation, "StaleHits", cache::staleHits);
+    }
 
-        log.info("Successfully logged into Google Music.");
+    public static List<SpeechletResponse> constantResponses() {
+        return CONSTANT_RESPONSES;
     }
 
-    private void prepareLogger() {
-        String log4jConfPath = "log4j.properties";
-        PropertyConfigurator.configure(log4jConfPath);
+    static String sessionKey(SpeechletRequestEnvelope<?> requestEnvelope) {
+        Context context = requestEnvelope.getContext();
+        if (context != null && context.hasState(SystemInterface.class)) {
+            SystemState system = context.getState(SystemInterface.class, SystemState.class);
+            if (system.getDevice() != null && system.getDevice().getDeviceId() != null)
+                return system.getDevice().getDeviceId();
+            if (system.getUser() != null && system.getUser().getUserId() != null)
+                return system.getUser().getUserId();
+        }
+
+        Session session = requestEnvelope.getSession();
+        if (session != null && session.getUser() != null && session.getUser().getUserId() != null)
+            return session.getUser().getUserId();
+        return ANONYMOUS_SESSION;
+    }
+
+    private boolean logPlaybackEvent(String methodName, SpeechletRequestEnvelope<? extends SpeechletRequest> request) {
+        if (!log.isInfoEnabled() || !playbackEvents.sample())
+            return false;
+        logMethodStart(methodName, request);
+        return true;
     }
 
     private void logMethodStart(String methodName, SpeechletRequestEnvelope<? extends SpeechletRequest> request) {
+        if (!log.isInfoEnabled())
+            return;
         Session session = request.getSession();
         log.info("METHOD START: {} with requestId {} and sessionId {}", methodName, request.getRequest().getRequestId(),
             session != null ? session.getSessionId() : null);
@@ -0,0 +1,93 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+class Library {
+    static final long SYNC_PERIOD_MINUTES = 60;
+
+    private final long       syncPeriodMinutes;
+    private final AtomicLong hits   = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile LibraryIndex             index = LibraryIndex.EMPTY;
+    private volatile ScheduledExecutorService executor;
+
+    Library(long syncPeriodMinutes) {
+        this.syncPeriodMinutes = syncPeriodMinutes;
+    }
+
+    static Library fromEnvironment() {
+        String period = System.getenv("LIBRARY_SYNC_MINUTES");
+        return new Library(period == null || period.isEmpty() ? SYNC_PERIOD_MINUTES : Long.parseLong(period));
+    }
+
+    void start(Loader loader) {
+        if (syncPeriodMinutes <= 0)
+            return;
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "library-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> sync(loader), 0, syncPeriodMinutes, MINUTES);
+    }
+
+    void shutdown() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    void sync(Loader loader) {
+        try {
+            long start = System.nanoTime();
+            List<Track> tracks = loader.load();
+            LibraryIndex updated = index.update(tracks);
+            if (updated == index) {
+                log.debug("Library is up to date with {} tracks", updated.size());
+                return;
+            }
+            index = updated;
+            log.info("Indexed {} library tracks in {} ms", updated.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Couldn't sync the library, keeping {} indexed tracks", index.size(), e);
+        }
+    }
+
+    SearchMatch find(String query) {
+        SearchMatch match = index.find(query);
+        if (match != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return match;
+    }
+
+    LibraryIndex index() {
+        return index;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    interface Loader {
+        List<Track> load() throws IOException;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(Library.class);
+}
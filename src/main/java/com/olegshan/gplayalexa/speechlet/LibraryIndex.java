@@ -0,0 +1,253 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+
+import java.util.*;
+
+class LibraryIndex extends TrackQueue {
+    static final LibraryIndex EMPTY = build(Collections.emptyList());
+
+    static final int    CANDIDATES  = 32;
+    static final double MATCH       = 0.7;
+    static final double TITLE_MATCH = 0.5;
+
+    private static final double QUERY_COVERAGE_WEIGHT = 0.7;
+    private static final double TITLE_COVERAGE_WEIGHT = 0.3;
+
+    private final String[] strings;
+    private final String[] trackIds;
+    private final int[]    titles;
+    private final int[]    artists;
+    private final int[]    albums;
+    private final long[]   grams;
+    private final int[]    offsets;
+    private final int[]    postings;
+
+    private LibraryIndex(String[] strings, String[] trackIds, int[] titles, int[] artists, int[] albums,
+                         long[] grams, int[] offsets, int[] postings) {
+        this.strings = strings;
+        this.trackIds = trackIds;
+        this.titles = titles;
+        this.artists = artists;
+        this.albums = albums;
+        this.grams = grams;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+    static LibraryIndex build(List<Track> tracks) {
+        Map<String, Integer> interned = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        List<String> trackIds = new ArrayList<>(tracks.size());
+        int[] titles = new int[tracks.size()];
+        int[] artists = new int[tracks.size()];
+        int[] albums = new int[tracks.size()];
+        List<long[]> trackGrams = new ArrayList<>(tracks.size());
+        int gramCount = 0;
+
+        for (Track track : tracks) {
+            String trackId = track.getStoreId().orElse(null);
+            if (trackId == null || !seen.add(trackId))
+                continue;
+
+            int i = trackIds.size();
+            trackIds.add(trackId);
+            titles[i] = intern(track.getTitle(), interned, strings);
+            artists[i] = intern(track.getArtist(), interned, strings);
+            albums[i] = intern(track.getAlbum(), interned, strings);
+
+            long[] keys = grams(text(track.getTitle()) + " " + text(track.getArtist()) + " " + text(track.getAlbum()));
+            trackGrams.add(keys);
+            gramCount += keys.length;
+        }
+
+        long[] all = new long[gramCount];
+        int position = 0;
+        for (long[] keys : trackGrams) {
+            System.arraycopy(keys, 0, all, position, keys.length);
+            position += keys.length;
+        }
+        long[] grams = distinct(all);
+
+        int[] offsets = new int[grams.length + 1];
+        for (long[] keys : trackGrams) {
+            for (long key : keys)
+                offsets[Arrays.binarySearch(grams, key) + 1]++;
+        }
+        for (int g = 0; g < grams.length; g++)
+            offsets[g + 1] += offsets[g];
+
+        int[] postings = new int[gramCount];
+        int[] next = Arrays.copyOf(offsets, grams.length);
+        for (int track = 0; track < trackGrams.size(); track++) {
+            for (long key : trackGrams.get(track))
+                postings[next[Arrays.binarySearch(grams, key)]++] = track;
+        }
+
+        int size = trackIds.size();
+        return new LibraryIndex(strings.toArray(new String[0]), trackIds.toArray(new String[0]),
+            Arrays.copyOf(titles, size), Arrays.copyOf(artists, size), Arrays.copyOf(albums, size),
+            grams, offsets, postings);
+    }
+
+    LibraryIndex update(List<Track> tracks) {
+        return sameTracks(tracks) ? this : build(tracks);
+    }
+
+    SearchMatch find(String query) {
+        long[] queryGrams = grams(query);
+        if (queryGrams.length == 0 || trackIds.length == 0)
+            return null;
+
+        short[] counts = new short[trackIds.length];
+        for (long gram : queryGrams) {
+            int g = Arrays.binarySearch(grams, gram);
+            if (g < 0)
+                continue;
+            for (int p = offsets[g]; p < offsets[g + 1]; p++)
+                counts[postings[p]]++;
+        }
+
+        int best = -1;
+        double bestScore = 0;
+        for (int candidate : candidates(counts)) {
+            double titleCoverage = coverage(grams(strings[titles[candidate]]), queryGrams);
+            if (titleCoverage < TITLE_MATCH)
+                continue;
+
+            double queryCoverage = (double) counts[candidate] / queryGrams.length;
+            double score = QUERY_COVERAGE_WEIGHT * queryCoverage + TITLE_COVERAGE_WEIGHT * titleCoverage;
+            if (score > bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+
+        return bestScore >= MATCH
+            ? SearchMatch.libraryTrack(trackIds[best], strings[titles[best]], strings[artists[best]], bestScore)
+            : null;
+    }
+
+    @Override
+    String queueId() {
+        return "library";
+    }
+
+    @Override
+    String name() {
+        return "your library";
+    }
+
+    @Override
+    String artist() {
+        return "various artists";
+    }
+
+    @Override
+    int size() {
+        return trackIds.length;
+    }
+
+    @Override
+    String trackId(int index) {
+        return trackIds[index];
+    }
+
+    @Override
+    String title(int index) {
+        return strings[titles[index]];
+    }
+
+    @Override
+    String artist(int index) {
+        return strings[artists[index]];
+    }
+
+    private int[] candidates(short[] counts) {
+        int[] top = new int[CANDIDATES];
+        int size = 0;
+        for (int track = 0; track < counts.length; track++) {
+            if (counts[track] == 0 || size == CANDIDATES && counts[track] <= counts[top[size - 1]])
+                continue;
+
+            int i = size < CANDIDATES ? size++ : size - 1;
+            while (i > 0 && counts[top[i - 1]] < counts[track]) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = track;
+        }
+        return Arrays.copyOf(top, size);
+    }
+
+    private boolean sameTracks(List<Track> tracks) {
+        int i = 0;
+        Set<String> seen = new HashSet<>();
+        for (Track track : tracks) {
+            String trackId = track.getStoreId().orElse(null);
+            if (trackId == null || !seen.add(trackId))
+                continue;
+            if (i >= trackIds.length || !trackId.equals(trackIds[i])
+                || !text(track.getTitle()).equals(strings[titles[i]])
+                || !text(track.getArtist()).equals(strings[artists[i]])
+                || !text(track.getAlbum()).equals(strings[albums[i]]))
+                return false;
+            i++;
+        }
+        return i == trackIds.length;
+    }
+
+    static long[] grams(String text) {
+        if (text == null)
+            return new long[0];
+        String normalized = SearchResultCache.normalize(text);
+        if (normalized.isEmpty())
+            return new long[0];
+
+        String padded = " " + normalized.replace(" ", "  ") + " ";
+        long[] keys = new long[padded.length()];
+        int size = 0;
+        for (int i = 0; i + 2 < padded.length(); i++) {
+            char first = padded.charAt(i);
+            char second = padded.charAt(i + 1);
+            if (second == ' ')
+                continue;
+            keys[size++] = (long) first << 32 | (long) second << 16 | padded.charAt(i + 2);
+        }
+        return distinct(Arrays.copyOf(keys, size));
+    }
+
+    private static double coverage(long[] grams, long[] in) {
+        if (grams.length == 0)
+            return 0;
+        int count = 0;
+        for (long gram : grams) {
+            if (Arrays.binarySearch(in, gram) >= 0)
+                count++;
+        }
+        return (double) count / grams.length;
+    }
+
+    private static long[] distinct(long[] keys) {
+        Arrays.sort(keys);
+        int size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1])
+                keys[size++] = keys[i];
+        }
+        return Arrays.copyOf(keys, size);
+    }
+
+    private static int intern(String value, Map<String, Integer> interned, List<String> strings) {
+        return interned.computeIfAbsent(text(value), key -> {
+            strings.add(key);
+            return strings.size() - 1;
+        });
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+}
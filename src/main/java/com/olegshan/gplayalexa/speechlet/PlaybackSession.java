@@ -0,0 +1,53 @@
+package com.olegshan.gplayalexa.speechlet;
+
+class PlaybackSession {
+    private final String key;
+
+    private          String      queueType = QueueToken.ALBUM;
+    private          TrackQueue  tracks    = AlbumTracks.EMPTY;
+    private          int         currentTrack;
+    private volatile long        lastAccessed;
+
+    PlaybackSession(String key, long now) {
+        this.key = key;
+        this.lastAccessed = now;
+    }
+
+    String key() {
+        return key;
+    }
+
+    String queueType() {
+        return queueType;
+    }
+
+    TrackQueue tracks() {
+        return tracks;
+    }
+
+    int currentTrack() {
+        return currentTrack;
+    }
+
+    void play(TrackQueue tracks, int currentTrack) {
+        play(QueueToken.ALBUM, tracks, currentTrack);
+    }
+
+    void play(String queueType, TrackQueue tracks, int currentTrack) {
+        this.queueType = queueType;
+        this.tracks = tracks;
+        this.currentTrack = currentTrack;
+    }
+
+    void moveTo(int currentTrack) {
+        this.currentTrack = currentTrack;
+    }
+
+    void touch(long now) {
+        lastAccessed = now;
+    }
+
+    long lastAccessed() {
+        return lastAccessed;
+    }
+}
@@ -0,0 +1,89 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import java.util.regex.Pattern;
+
+class QueueToken {
+    static final String ALBUM       = "album";
+    static final String DISCOGRAPHY = "discography";
+    static final String SHUFFLE     = "shuffle";
+    static final String SONG        = "song";
+
+    private static final String  SEPARATOR       = "|";
+    private static final Pattern SPLIT_SEPARATOR = Pattern.compile(Pattern.quote(SEPARATOR));
+
+    private final String type;
+    private final String queueId;
+    private final int    position;
+    private final String trackId;
+
+    private QueueToken(String type, String queueId, int position, String trackId) {
+        this.type = type;
+        this.queueId = queueId;
+        this.position = position;
+        this.trackId = trackId;
+    }
+
+    static QueueToken album(String albumId, int position, String trackId) {
+        return new QueueToken(ALBUM, albumId, position, trackId);
+    }
+
+    static QueueToken queue(String type, String queueId, int position, String trackId) {
+        return new QueueToken(type, queueId, position, trackId);
+    }
+
+    static QueueToken song(String trackId) {
+        return new QueueToken(SONG, trackId, 0, trackId);
+    }
+
+    static QueueToken parse(String token) {
+        if (token == null)
+            return null;
+
+        String[] parts = SPLIT_SEPARATOR.split(token, 4);
+        if (parts.length != 4 || !(isQueue(parts[0]) || SONG.equals(parts[0])))
+            return null;
+
+        try {
+            return new QueueToken(parts[0], parts[1], Integer.parseInt(parts[2]), parts[3]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    String encode() {
+        return type + SEPARATOR + queueId + SEPARATOR + position + SEPARATOR + trackId;
+    }
+
+    boolean isAlbum() {
+        return ALBUM.equals(type);
+    }
+
+    boolean isQueue() {
+        return isQueue(type);
+    }
+
+    private static boolean isQueue(String type) {
+        return ALBUM.equals(type) || DISCOGRAPHY.equals(type) || SHUFFLE.equals(type);
+    }
+
+    String type() {
+        return type;
+    }
+
+    String queueId() {
+        return queueId;
+    }
+
+    int position() {
+        return position;
+    }
+
+    String trackId() {
+        return trackId;
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
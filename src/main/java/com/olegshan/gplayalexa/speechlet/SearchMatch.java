@@ -0,0 +1,123 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Album;
+import com.github.felixgail.gplaymusic.model.Artist;
+import com.github.felixgail.gplaymusic.model.Track;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+class SearchMatch {
+    static final double EXACT_MATCH      = 0.99;
+    static final double ACCEPTABLE_MATCH = 0.5;
+
+    private static final double QUERY_COVERAGE_WEIGHT = 0.7;
+    private static final double TITLE_COVERAGE_WEIGHT = 0.3;
+    private static final double RANK_PENALTY          = 0.02;
+
+    static final Comparator<SearchMatch> BEST_FIRST = Comparator.comparingDouble(SearchMatch::score).reversed()
+        .thenComparing(SearchMatch::type);
+
+    enum Type {ARTIST, ALBUM, TRACK}
+
+    private final Type   type;
+    private final String id;
+    private final String title;
+    private final String artist;
+    private final Track  track;
+    private final double score;
+
+    private SearchMatch(Type type, String id, String title, String artist, Track track, double score) {
+        this.type = type;
+        this.id = id;
+        this.title = title;
+        this.artist = artist;
+        this.track = track;
+        this.score = score;
+    }
+
+    static SearchMatch track(String query, Track track, int rank) {
+        return new SearchMatch(Type.TRACK, track.getID(), track.getTitle(), track.getArtist(), track,
+            relevance(query, track.getTitle(), track.getArtist(), rank));
+    }
+
+    static SearchMatch album(String query, Album album, int rank) {
+        return new SearchMatch(Type.ALBUM, album.getAlbumId(), album.getName(), album.getAlbumArtist(), null,
+            relevance(query, album.getName(), album.getAlbumArtist(), rank));
+    }
+
+    static SearchMatch artist(String query, Artist artist, int rank) {
+        return new SearchMatch(Type.ARTIST, artist.getArtistId().orElse(null), artist.getName(), artist.getName(), null,
+            relevance(query, artist.getName(), null, rank));
+    }
+
+    static SearchMatch libraryTrack(String trackId, String title, String artist, double score) {
+        return new SearchMatch(Type.TRACK, trackId, title, artist, null, score);
+    }
+
+    static double relevance(String query, String title, String artist, int rank) {
+        Set<String> queryWords = words(query);
+        Set<String> titleWords = words(title);
+        if (queryWords.isEmpty() || titleWords.isEmpty())
+            return 0;
+
+        Set<String> candidateWords = new HashSet<>(titleWords);
+        candidateWords.addAll(words(artist));
+
+        double queryCoverage = (double) count(queryWords, candidateWords) / queryWords.size();
+        double titleCoverage = (double) count(titleWords, queryWords) / titleWords.size();
+        double score = QUERY_COVERAGE_WEIGHT * queryCoverage + TITLE_COVERAGE_WEIGHT * titleCoverage;
+        return Math.max(0, score - RANK_PENALTY * rank);
+    }
+
+    Type type() {
+        return type;
+    }
+
+    String id() {
+        return id;
+    }
+
+    String title() {
+        return title;
+    }
+
+    String artist() {
+        return artist;
+    }
+
+    Track track() {
+        return track;
+    }
+
+    double score() {
+        return score;
+    }
+
+    boolean isAcceptable() {
+        return id != null && score >= ACCEPTABLE_MATCH;
+    }
+
+    private static Set<String> words(String text) {
+        if (text == null)
+            return new HashSet<>();
+        String normalized = SearchResultCache.normalize(text);
+        return normalized.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(normalized.split(" ")));
+    }
+
+    private static int count(Set<String> words, Set<String> in) {
+        int count = 0;
+        for (String word : words) {
+            if (in.contains(word))
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + title + " by " + artist + " (" + score + ")";
+    }
+}
@@ -0,0 +1,135 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+
+class SearchResultCache<T> {
+    static final int  MAX_ENTRIES = 128;
+    static final long TTL_MILLIS  = HOURS.toMillis(6);
+
+    private static final Pattern NOT_WORD_CHARACTERS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final String       name;
+    private final LongSupplier clock;
+    private final long         ttlMillis;
+    private final AtomicLong   hits        = new AtomicLong();
+    private final AtomicLong   misses      = new AtomicLong();
+    private final AtomicLong   evictions   = new AtomicLong();
+    private final AtomicLong   expirations = new AtomicLong();
+    private final AtomicLong   staleHits   = new AtomicLong();
+
+    private final Map<String, CachedResult<T>> results;
+
+    SearchResultCache(String name) {
+        this(name, System::currentTimeMillis, MAX_ENTRIES, TTL_MILLIS);
+    }
+
+    SearchResultCache(String name, LongSupplier clock, int maxEntries, long ttlMillis) {
+        this.name = name;
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.results = new LinkedHashMap<String, CachedResult<T>>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult<T>> eldest) {
+                boolean evict = size() > maxEntries;
+                if (evict)
+                    evictions.incrementAndGet();
+                return evict;
+            }
+        };
+    }
+
+    List<T> get(String query, Search<T> search) throws IOException {
+        String key = normalize(query);
+        long now = clock.getAsLong();
+
+        CachedResult<T> expired = null;
+        synchronized (results) {
+            CachedResult<T> cached = results.get(key);
+            if (cached != null) {
+                if (now < cached.expiresAt) {
+                    hits.incrementAndGet();
+                    return cached.result;
+                }
+                expired = cached;
+                expirations.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        List<T> result;
+        try {
+            result = search.run(query);
+        } catch (IOException e) {
+            if (expired == null)
+                throw e;
+            staleHits.incrementAndGet();
+            log.warn("{} for {} failed, serving the expired result: {}", name, query, e.getMessage());
+            return expired.result;
+        }
+
+        synchronized (results) {
+            if (result.isEmpty())
+                results.remove(key);
+            else
+                results.put(key, new CachedResult<>(result, now + ttlMillis));
+        }
+        return result;
+    }
+
+    static String normalize(String query) {
+        return NOT_WORD_CHARACTERS.matcher(query.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    String stats() {
+        return String.format("%s cache hits: %d, misses: %d, evictions: %d, expirations: %d, stale hits: %d",
+            name, hits.get(), misses.get(), evictions.get(), expirations.get(), staleHits.get());
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    long expirations() {
+        return expirations.get();
+    }
+
+    long staleHits() {
+        return staleHits.get();
+    }
+
+    interface Search<T> {
+        List<T> run(String query) throws IOException;
+    }
+
+    private static class CachedResult<T> {
+        private final List<T> result;
+        private final long    expiresAt;
+
+        private CachedResult(List<T> result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SearchResultCache.class);
+}
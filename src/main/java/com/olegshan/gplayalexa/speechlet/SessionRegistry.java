@@ -0,0 +1,89 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+class SessionRegistry {
+    static final int  MAX_SESSIONS        = 10_000;
+    static final long IDLE_TIMEOUT_MILLIS = HOURS.toMillis(2);
+    static final long SWEEP_PERIOD_MILLIS = MINUTES.toMillis(1);
+
+    private final ConcurrentHashMap<String, PlaybackSession> sessions = new ConcurrentHashMap<>();
+
+    private final LongSupplier              clock;
+    private final int                       maxSessions;
+    private final long                      idleTimeoutMillis;
+    private final Consumer<PlaybackSession> onEviction;
+    private final AtomicLong                lastSweep = new AtomicLong();
+    private final AtomicLong                evictions = new AtomicLong();
+
+    SessionRegistry(Consumer<PlaybackSession> onEviction) {
+        this(System::currentTimeMillis, MAX_SESSIONS, IDLE_TIMEOUT_MILLIS, onEviction);
+    }
+
+    SessionRegistry(LongSupplier clock, int maxSessions, long idleTimeoutMillis, Consumer<PlaybackSession> onEviction) {
+        this.clock = clock;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.onEviction = onEviction;
+        this.lastSweep.set(clock.getAsLong());
+    }
+
+    PlaybackSession get(String key) {
+        long now = clock.getAsLong();
+        PlaybackSession session = sessions.computeIfAbsent(key, k -> new PlaybackSession(k, now));
+        session.touch(now);
+
+        long last = lastSweep.get();
+        if ((sessions.size() > maxSessions || now - last >= SWEEP_PERIOD_MILLIS) && lastSweep.compareAndSet(last, now))
+            evictIdle(now);
+        return session;
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    void evictIdle(long now) {
+        sessions.values().removeIf(session -> {
+            boolean idle = now - session.lastAccessed() >= idleTimeoutMillis;
+            if (idle)
+                evicted(session);
+            return idle;
+        });
+
+        int excess = sessions.size() - maxSessions;
+        if (excess <= 0)
+            return;
+
+        List<PlaybackSession> oldest = new ArrayList<>(sessions.values());
+        oldest.sort(Comparator.comparingLong(PlaybackSession::lastAccessed));
+        for (PlaybackSession session : oldest.subList(0, Math.min(excess, oldest.size()))) {
+            if (sessions.remove(session.key(), session))
+                evicted(session);
+        }
+        log.info("Evicted least recently used sessions, {} sessions left", sessions.size());
+    }
+
+    private void evicted(PlaybackSession session) {
+        evictions.incrementAndGet();
+        onEviction.accept(session);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SessionRegistry.class);
+}
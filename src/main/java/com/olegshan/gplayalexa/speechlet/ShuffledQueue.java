@@ -0,0 +1,83 @@
+package com.olegshan.gplayalexa.speechlet;
+
+class ShuffledQueue extends TrackQueue {
+    private static final int ROUNDS = 4;
+
+    private final TrackQueue source;
+    private final long       seed;
+    private final int        halfBits;
+    private final int        halfMask;
+
+    ShuffledQueue(TrackQueue source, long seed) {
+        this.source = source;
+        this.seed = seed;
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(source.size() - 1, 0));
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1 << halfBits) - 1;
+    }
+
+    static long seed(String queueId) {
+        return Long.parseUnsignedLong(queueId, 16);
+    }
+
+    @Override
+    String queueId() {
+        return Long.toHexString(seed);
+    }
+
+    @Override
+    String name() {
+        return source.name();
+    }
+
+    @Override
+    String artist() {
+        return source.artist();
+    }
+
+    @Override
+    int size() {
+        return source.size();
+    }
+
+    @Override
+    String trackId(int index) {
+        return source.trackId(position(index));
+    }
+
+    @Override
+    String title(int index) {
+        return source.title(position(index));
+    }
+
+    @Override
+    String artist(int index) {
+        return source.artist(position(index));
+    }
+
+    int position(int index) {
+        int position = index;
+        do {
+            position = permute(position);
+        } while (position >= source.size());
+        return position;
+    }
+
+    private int permute(int value) {
+        int left = value >>> halfBits;
+        int right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            int next = left ^ round(right, round) & halfMask;
+            left = right;
+            right = next;
+        }
+        return left << halfBits | right;
+    }
+
+    private int round(int value, int round) {
+        long hash = (value + seed + round) * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 31;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return (int) (hash ^ hash >>> 29);
+    }
+}
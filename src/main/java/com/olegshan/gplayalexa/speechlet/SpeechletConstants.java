@@ -5,9 +5,17 @@ class SpeechletConstants {
     static final String CHOOSE_THE_MUSIC_REQUEST = "Say 'play' or 'get album' and then name the artist and the title.";
     static final String WRONG_REQUEST            = "Sorry, I didn't get that.";
     static final String ERROR                    = "Sorry, something went wrong. Please try again.";
+    static final String BUSY                     = "Google Music is busy right now. Please try again in a moment.";
 
-    static final String SINGLE_SONG = "SingleSong";
-    static final String SONG_SLOT   = "song";
-    static final String ALBUM       = "Album";
-    static final String ALBUM_SLOT  = "albumName";
+    static final String SINGLE_SONG     = "SingleSong";
+    static final String SONG_SLOT       = "song";
+    static final String ALBUM           = "Album";
+    static final String ALBUM_SLOT      = "albumName";
+    static final String ARTIST          = "Artist";
+    static final String ARTIST_SLOT     = "artistName";
+    static final String PLAY_ANYTHING   = "PlayAnything";
+    static final String QUERY_SLOT      = "query";
+    static final String SHUFFLE_LIBRARY = "ShuffleLibrary";
+
+    static final String ANONYMOUS_SESSION = "anonymous";
 }
@@ -5,13 +5,27 @@ import com.amazon.speech.speechlet.SpeechletResponse;
 import com.amazon.speech.speechlet.interfaces.audioplayer.directive.StopDirective;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
 import com.amazon.speech.ui.Reprompt;
+import com.olegshan.gplayalexa.api.DeadlineExceededException;
+import com.olegshan.gplayalexa.api.RateLimitedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static com.olegshan.gplayalexa.speechlet.SpeechletConstants.CHOOSE_THE_MUSIC_REQUEST;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.olegshan.gplayalexa.speechlet.SpeechletConstants.*;
 import static java.util.Collections.singletonList;
 
 class SpeechletResponses {
+    static final SpeechletResponse WELCOME_RESPONSE       = newAskResponse(WELCOME_TEXT);
+    static final SpeechletResponse ERROR_RESPONSE         = newAskResponse(ERROR);
+    static final SpeechletResponse BUSY_RESPONSE          = newAskResponse(BUSY);
+    static final SpeechletResponse WRONG_REQUEST_RESPONSE = newAskResponse(WRONG_REQUEST);
+    static final SpeechletResponse STOP_RESPONSE          = stopResponse();
+
+    static final List<SpeechletResponse> CONSTANT_RESPONSES = Collections.unmodifiableList(Arrays.asList(
+        WELCOME_RESPONSE, ERROR_RESPONSE, BUSY_RESPONSE, WRONG_REQUEST_RESPONSE, STOP_RESPONSE));
 
     static SpeechletResponse playResponse(String item, String artist, Directive directive) {
         SpeechletResponse response = new SpeechletResponse();
@@ -25,7 +39,15 @@ class SpeechletResponses {
         return response;
     }
 
-    static SpeechletResponse newAskResponse(String text) {
+    static SpeechletResponse errorResponse(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RateLimitedException || cause instanceof DeadlineExceededException)
+                return BUSY_RESPONSE;
+        }
+        return ERROR_RESPONSE;
+    }
+
+    private static SpeechletResponse newAskResponse(String text) {
         PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
         speech.setText(text);
         PlainTextOutputSpeech repromptSpeech = new PlainTextOutputSpeech();
@@ -44,6 +66,14 @@ class SpeechletResponses {
         return notFoundResponse("Sorry, I couldn't find an album by request " + request);
     }
 
+    static SpeechletResponse artistNotFoundResponse(String request) {
+        return notFoundResponse("Sorry, I couldn't find an artist by request " + request);
+    }
+
+    static SpeechletResponse nothingFoundResponse(String request) {
+        return notFoundResponse("Sorry, I couldn't find anything by request " + request);
+    }
+
     static SpeechletResponse emptyListResponse(String type) {
         return notFoundResponse("Sorry, I couldn't play " + type + " song because the track list is empty");
     }
@@ -55,7 +85,7 @@ class SpeechletResponses {
         return SpeechletResponse.newTellResponse(speech);
     }
 
-    static SpeechletResponse stopResponse() {
+    private static SpeechletResponse stopResponse() {
         SpeechletResponse response = new SpeechletResponse();
         response.setDirectives(singletonList(new StopDirective()));
 
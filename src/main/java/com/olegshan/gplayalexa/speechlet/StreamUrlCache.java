@@ -0,0 +1,304 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+import com.github.felixgail.gplaymusic.model.enums.StreamQuality;
+import com.olegshan.gplayalexa.api.Deadline;
+import com.olegshan.gplayalexa.api.DeadlineExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class StreamUrlCache {
+    static final int  PREFETCH_DEPTH         = 3;
+    static final int  MAX_ENTRIES            = 32;
+    static final long EXPIRY_MARGIN_MILLIS   = SECONDS.toMillis(30);
+    static final long DEFAULT_TTL_MILLIS     = MINUTES.toMillis(1);
+    static final long REFRESH_PERIOD_SECONDS = 15;
+
+    private static final Pattern EXPIRE_PARAM = Pattern.compile("[?&]expire=(\\d+)");
+
+    private final ScheduledExecutorService executor;
+    private final LongSupplier             clock;
+    private final TrackLoader              loader;
+    private final StreamUrlResolver        resolver;
+    private final int                      prefetchDepth;
+    private final AtomicLong               hits        = new AtomicLong();
+    private final AtomicLong               misses      = new AtomicLong();
+    private final AtomicLong               expirations = new AtomicLong();
+    private final AtomicLong               refreshes   = new AtomicLong();
+    private final AtomicLong               staleHits   = new AtomicLong();
+
+    private final Map<String, CompletableFuture<StreamUrl>> urls;
+    private final Map<String, Window>                       queues = new HashMap<>();
+
+    StreamUrlCache(TrackLoader loader, StreamUrlResolver resolver) {
+        this(Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "stream-url-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }), System::currentTimeMillis, loader, resolver, PREFETCH_DEPTH, MAX_ENTRIES);
+        executor.scheduleWithFixedDelay(this::refreshExpiring, REFRESH_PERIOD_SECONDS, REFRESH_PERIOD_SECONDS, SECONDS);
+    }
+
+    StreamUrlCache(ScheduledExecutorService executor, LongSupplier clock, TrackLoader loader, int prefetchDepth,
+                   int maxEntries) {
+        this(executor, clock, loader, track -> track.getStreamURL(StreamQuality.HIGH), prefetchDepth, maxEntries);
+    }
+
+    StreamUrlCache(ScheduledExecutorService executor, LongSupplier clock, TrackLoader loader,
+                   StreamUrlResolver resolver, int prefetchDepth, int maxEntries) {
+        this.executor = executor;
+        this.clock = clock;
+        this.loader = loader;
+        this.resolver = resolver;
+        this.prefetchDepth = prefetchDepth;
+        this.urls = new LinkedHashMap<String, CompletableFuture<StreamUrl>>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<StreamUrl>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void queue(String sessionKey, TrackQueue tracks) {
+        queue(sessionKey, tracks, 0);
+    }
+
+    void queue(String sessionKey, TrackQueue tracks, int position) {
+        synchronized (urls) {
+            if (tracks.isEmpty())
+                queues.remove(sessionKey);
+            else
+                queues.put(sessionKey, new Window(tracks, position));
+        }
+    }
+
+    void dequeue(String sessionKey) {
+        synchronized (urls) {
+            queues.remove(sessionKey);
+        }
+    }
+
+    void prefetch(String sessionKey, TrackQueue tracks, int from) {
+        queue(sessionKey, tracks, Math.max(from - 1, 0));
+        prefetch(tracks, from);
+    }
+
+    void prefetch(TrackQueue tracks, int from) {
+        int to = Math.min(tracks.size(), from + prefetchDepth);
+        for (int i = Math.max(from, 0); i < to; i++) {
+            String trackId = tracks.trackId(i);
+            synchronized (urls) {
+                CompletableFuture<StreamUrl> url = urls.get(trackId);
+                if (url != null && !isStale(url))
+                    continue;
+                urls.put(trackId, CompletableFuture.supplyAsync(() -> resolve(load(trackId)), executor));
+            }
+        }
+    }
+
+    String get(Track track) {
+        return get(track.getID(), () -> track);
+    }
+
+    String get(String trackId) {
+        return get(trackId, () -> load(trackId));
+    }
+
+    private String get(String trackId, Supplier<Track> trackSupplier) {
+        CompletableFuture<StreamUrl> url;
+        synchronized (urls) {
+            url = urls.get(trackId);
+        }
+
+        StreamUrl expiring = null;
+        if (url != null) {
+            try {
+                StreamUrl result = await(url);
+                long now = clock.getAsLong();
+                if (result.isUsableAt(now)) {
+                    hits.incrementAndGet();
+                    return result.url;
+                }
+                expirations.incrementAndGet();
+                if (now < result.expiresAt)
+                    expiring = result;
+                log.info("Cached stream url for track {} is about to expire, resolving it again", trackId);
+            } catch (TimeoutException e) {
+                log.warn("Prefetch of track {} didn't complete before the request deadline", trackId);
+                throw new RuntimeException(new DeadlineExceededException("Stream url prefetch of track " + trackId));
+            } catch (ExecutionException e) {
+                log.warn("Prefetch failed for track {}, resolving it again", trackId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (expiring == null) {
+                synchronized (urls) {
+                    urls.remove(trackId, url);
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        StreamUrl result;
+        try {
+            result = resolve(trackSupplier.get());
+        } catch (RuntimeException e) {
+            if (expiring == null || clock.getAsLong() >= expiring.expiresAt)
+                throw e;
+            staleHits.incrementAndGet();
+            log.warn("Couldn't resolve stream url for track {}, serving the cached one until it expires", trackId);
+            return expiring.url;
+        }
+        store(trackId, result);
+        return result.url;
+    }
+
+    void refreshExpiring() {
+        long refreshBefore = clock.getAsLong() + EXPIRY_MARGIN_MILLIS + SECONDS.toMillis(REFRESH_PERIOD_SECONDS);
+        List<String> expiring = new ArrayList<>();
+        synchronized (urls) {
+            Set<String> queued = new HashSet<>();
+            for (Window window : queues.values()) {
+                int to = Math.min(window.tracks.size(), window.position + prefetchDepth + 1);
+                for (int i = window.position; i < to; i++)
+                    queued.add(window.tracks.trackId(i));
+            }
+            for (Map.Entry<String, CompletableFuture<StreamUrl>> entry : urls.entrySet()) {
+                StreamUrl url = entry.getValue().getNow(null);
+                if (url != null && queued.contains(entry.getKey()) && url.expiresAt < refreshBefore)
+                    expiring.add(entry.getKey());
+            }
+        }
+
+        for (String trackId : expiring) {
+            CompletableFuture.supplyAsync(() -> resolve(load(trackId)), executor)
+                .thenAccept(url -> {
+                    refreshes.incrementAndGet();
+                    store(trackId, url);
+                });
+        }
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    long expirations() {
+        return expirations.get();
+    }
+
+    long refreshes() {
+        return refreshes.get();
+    }
+
+    long staleHits() {
+        return staleHits.get();
+    }
+
+    private static StreamUrl await(CompletableFuture<StreamUrl> url)
+        throws ExecutionException, TimeoutException, InterruptedException {
+        Deadline deadline = Deadline.current();
+        return deadline != null ? url.get(deadline.remainingNanos(), NANOSECONDS) : url.get();
+    }
+
+    private void store(String trackId, StreamUrl url) {
+        synchronized (urls) {
+            urls.put(trackId, CompletableFuture.completedFuture(url));
+        }
+    }
+
+    private boolean isStale(CompletableFuture<StreamUrl> url) {
+        if (url.isCompletedExceptionally())
+            return true;
+        StreamUrl result = url.getNow(null);
+        return result != null && !result.isUsableAt(clock.getAsLong());
+    }
+
+    private Track load(String trackId) {
+        try {
+            return loader.load(trackId);
+        } catch (IOException e) {
+            log.error("Error loading track {}", trackId);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private StreamUrl resolve(Track track) {
+        String url;
+        try {
+            url = resolver.resolve(track).toString();
+        } catch (IOException e) {
+            log.error("Error getting stream url for track {} ", track.getTitle());
+            throw new RuntimeException(e);
+        }
+        return new StreamUrl(url, parseExpiry(url, clock.getAsLong()));
+    }
+
+    static long parseExpiry(String url, long now) {
+        Matcher matcher = EXPIRE_PARAM.matcher(url);
+        if (matcher.find()) {
+            try {
+                return SECONDS.toMillis(Long.parseLong(matcher.group(1)));
+            } catch (NumberFormatException e) {
+                log.warn("Couldn't parse expiry of stream url {}", url);
+            }
+        }
+        return now + DEFAULT_TTL_MILLIS;
+    }
+
+    interface TrackLoader {
+        Track load(String trackId) throws IOException;
+    }
+
+    interface StreamUrlResolver {
+        URL resolve(Track track) throws IOException;
+    }
+
+    private static class Window {
+        private final TrackQueue tracks;
+        private final int        position;
+
+        private Window(TrackQueue tracks, int position) {
+            this.tracks = tracks;
+            this.position = position;
+        }
+    }
+
+    private static class StreamUrl {
+        private final String url;
+        private final long   expiresAt;
+
+        private StreamUrl(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isUsableAt(long now) {
+            return now < expiresAt - EXPIRY_MARGIN_MILLIS;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(StreamUrlCache.class);
+}
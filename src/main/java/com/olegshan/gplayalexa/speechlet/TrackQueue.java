@@ -0,0 +1,39 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import java.util.Objects;
+
+abstract class TrackQueue {
+
+    abstract String queueId();
+
+    abstract String name();
+
+    abstract String artist();
+
+    abstract int size();
+
+    abstract String trackId(int index);
+
+    abstract String title(int index);
+
+    abstract String artist(int index);
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int indexOf(String trackId, int expectedIndex) {
+        int size = size();
+        if (expectedIndex >= 0 && expectedIndex < size && hasTrackId(expectedIndex, trackId))
+            return expectedIndex;
+        for (int i = 0; i < size; i++) {
+            if (hasTrackId(i, trackId))
+                return i;
+        }
+        return Math.max(0, Math.min(expectedIndex, size - 1));
+    }
+
+    boolean hasTrackId(int index, String trackId) {
+        return Objects.equals(trackId(index), trackId);
+    }
+}
@@ -0,0 +1,52 @@
+package com.olegshan.gplayalexa.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TraceReader implements Closeable {
+    private final DataInputStream in;
+
+    public TraceReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        if (in.readInt() != TraceRecorder.MAGIC || in.readByte() != TraceRecorder.FORMAT_VERSION) {
+            in.close();
+            throw new IOException(file + " is not a trace of a supported version");
+        }
+    }
+
+    public TraceRecord next() throws IOException {
+        in.mark(1);
+        if (in.read() < 0)
+            return null;
+        in.reset();
+        try {
+            return TraceRecord.readFrom(in);
+        } catch (EOFException e) {
+            log.warn("Trace ends with a truncated record, ignoring it");
+            return null;
+        }
+    }
+
+    public static List<TraceRecord> readAll(Path file) throws IOException {
+        List<TraceRecord> records = new ArrayList<>();
+        try (TraceReader reader = new TraceReader(file)) {
+            TraceRecord record;
+            while ((record = reader.next()) != null)
+                records.add(record);
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TraceReader.class);
+}
@@ -0,0 +1,150 @@
+package com.olegshan.gplayalexa.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class TraceRecord {
+    private static final String[] NO_HEADERS = new String[0];
+    private static final byte[]   NO_BODY    = new byte[0];
+
+    public enum Type {
+        REQUEST, RESPONSE, UPSTREAM
+    }
+
+    public final Type     type;
+    public final long     timestampMicros;
+    public final long     requestId;
+    public final long     latencyMicros;
+    public final String   method;
+    public final String   url;
+    public final int      status;
+    public final String[] headers;
+    public final byte[]   body;
+
+    private TraceRecord(Type type, long timestampMicros, long requestId, long latencyMicros, String method,
+                        String url, int status, String[] headers, byte[] body) {
+        this.type = type;
+        this.timestampMicros = timestampMicros;
+        this.requestId = requestId;
+        this.latencyMicros = latencyMicros;
+        this.method = method;
+        this.url = url;
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    static TraceRecord request(long timestampMicros, long requestId, byte[] body) {
+        return new TraceRecord(Type.REQUEST, timestampMicros, requestId, 0, null, null, 0, NO_HEADERS, body);
+    }
+
+    static TraceRecord response(long timestampMicros, long requestId, long latencyMicros, byte[] body) {
+        return new TraceRecord(Type.RESPONSE, timestampMicros, requestId, latencyMicros, null, null, 0, NO_HEADERS,
+            body);
+    }
+
+    static TraceRecord upstream(long timestampMicros, String method, String url, int status, String[] headers,
+                                long latencyMicros, byte[] body) {
+        return new TraceRecord(Type.UPSTREAM, timestampMicros, 0, latencyMicros, method, url, status, headers, body);
+    }
+
+    public String header(String name) {
+        for (int i = 0; i < headers.length; i += 2) {
+            if (headers[i].equalsIgnoreCase(name))
+                return headers[i + 1];
+        }
+        return null;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        writeVarLong(out, timestampMicros);
+        switch (type) {
+            case REQUEST:
+                writeVarLong(out, requestId);
+                break;
+            case RESPONSE:
+                writeVarLong(out, requestId);
+                writeVarLong(out, latencyMicros);
+                break;
+            case UPSTREAM:
+                writeString(out, method);
+                writeString(out, url);
+                writeVarLong(out, status);
+                writeVarLong(out, headers.length / 2);
+                for (String header : headers)
+                    writeString(out, header);
+                writeVarLong(out, latencyMicros);
+                break;
+        }
+        writeBytes(out, body);
+    }
+
+    static TraceRecord readFrom(DataInput in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= Type.values().length)
+            throw new IOException("Unknown trace record type " + ordinal);
+        Type type = Type.values()[ordinal];
+        long timestampMicros = readVarLong(in);
+        switch (type) {
+            case REQUEST:
+                return request(timestampMicros, readVarLong(in), readBytes(in));
+            case RESPONSE:
+                long requestId = readVarLong(in);
+                return response(timestampMicros, requestId, readVarLong(in), readBytes(in));
+            default:
+                String method = readString(in);
+                String url = readString(in);
+                int status = (int) readVarLong(in);
+                String[] headers = new String[(int) readVarLong(in) * 2];
+                for (int i = 0; i < headers.length; i++)
+                    headers[i] = readString(in);
+                long latencyMicros = readVarLong(in);
+                return upstream(timestampMicros, method, url, status, headers, latencyMicros, readBytes(in));
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable-length number in trace");
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value != null ? value.getBytes(UTF_8) : NO_BODY);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), UTF_8);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Trace record of " + length + " bytes is too large");
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
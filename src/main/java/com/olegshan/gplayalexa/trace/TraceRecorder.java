@@ -0,0 +1,140 @@
+package com.olegshan.gplayalexa.trace;
+
+import com.olegshan.gplayalexa.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class TraceRecorder {
+    static final int  MAGIC          = 0x47505452;
+    static final byte FORMAT_VERSION = 1;
+
+    private final Path             file;
+    private final DataOutputStream out;
+    private final long             baseMicros = MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final long             baseNanos  = System.nanoTime();
+    private final AtomicLong       requestIds = new AtomicLong(ThreadLocalRandom.current().nextLong() >>> 2);
+    private final AtomicLong       records    = new AtomicLong();
+
+    private volatile boolean failed;
+
+    TraceRecorder() {
+        this.file = null;
+        this.out = null;
+    }
+
+    TraceRecorder(Path file, Metrics metrics) throws IOException {
+        this.file = file;
+        boolean isNew = !Files.exists(file) || Files.size(file) == 0;
+        if (!isNew) {
+            try (TraceReader ignored = new TraceReader(file)) {
+                log.info("Appending to trace {}", file);
+            }
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, CREATE, APPEND)));
+        if (isNew) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.flush();
+        }
+        metrics.counter("TraceRecorder", "Records", records::get);
+    }
+
+    public static TraceRecorder recorder() {
+        return Holder.INSTANCE;
+    }
+
+    static TraceRecorder fromEnvironment() {
+        String traceFile = System.getenv("TRACE_FILE");
+        if (traceFile == null || traceFile.isEmpty())
+            return new TraceRecorder();
+
+        try {
+            TraceRecorder recorder = new TraceRecorder(Paths.get(traceFile), Metrics.metrics());
+            Runtime.getRuntime().addShutdownHook(new Thread(recorder::close, "trace-recorder-close"));
+            log.info("Recording requests and Google Music calls to {}", traceFile);
+            return recorder;
+        } catch (IOException e) {
+            log.warn("Couldn't open trace {}, requests won't be recorded", traceFile, e);
+            return new TraceRecorder();
+        }
+    }
+
+    public boolean isEnabled() {
+        return out != null && !failed;
+    }
+
+    public long request(byte[] request) {
+        if (!isEnabled())
+            return -1;
+        long requestId = requestIds.incrementAndGet();
+        write(TraceRecord.request(nowMicros(), requestId, request), false);
+        return requestId;
+    }
+
+    public void response(long requestId, long startNanos, byte[] response) {
+        if (requestId < 0 || !isEnabled())
+            return;
+        long latencyMicros = NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        write(TraceRecord.response(nowMicros(), requestId, latencyMicros, response), true);
+    }
+
+    public void upstream(String method, String url, int status, String[] headers, long latencyNanos, byte[] body) {
+        if (!isEnabled())
+            return;
+        write(TraceRecord.upstream(nowMicros(), method, url, status, headers, NANOSECONDS.toMicros(latencyNanos),
+            body), false);
+    }
+
+    long records() {
+        return records.get();
+    }
+
+    synchronized void close() {
+        if (out == null)
+            return;
+        failed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Couldn't close trace {}", file, e);
+        }
+    }
+
+    private long nowMicros() {
+        return baseMicros + NANOSECONDS.toMicros(System.nanoTime() - baseNanos);
+    }
+
+    private synchronized void write(TraceRecord record, boolean flush) {
+        if (failed)
+            return;
+        try {
+            record.writeTo(out);
+            if (flush)
+                out.flush();
+            records.incrementAndGet();
+        } catch (IOException e) {
+            failed = true;
+            log.warn("Couldn't write to trace {}, recording stopped", file, e);
+        }
+    }
+
+    private static class Holder {
+        private static final TraceRecorder INSTANCE = fromEnvironment();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TraceRecorder.class);
+}
@@ -0,0 +1,58 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.amazon.speech.speechlet.SpeechletRequestHandler;
+import com.amazon.speech.speechlet.lambda.LambdaSpeechletRequestHandler;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.olegshan.gplayalexa.perf.AlexaRequests.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AudioPlayerEventBenchmark {
+    @Param({"AudioPlayer.PlaybackStarted", "AudioPlayer.PlaybackFinished"})
+    private String type;
+
+    private byte[]                          request;
+    private GoogleMusicSpeechlet            speechlet;
+    private GoogleMusicRequestStreamHandler handler;
+    private SpeechletRequestHandler         sdkHandler;
+
+    @Setup
+    public void setUp() {
+        Set<String> applicationIds = Collections.singleton(APPLICATION_ID);
+        speechlet = new GoogleMusicSpeechlet(() -> {
+            throw new IllegalStateException("Google Music isn't used by AudioPlayer events");
+        });
+        handler = new GoogleMusicRequestStreamHandler(speechlet, applicationIds);
+        sdkHandler = new LambdaSpeechletRequestHandler(applicationIds);
+        request = bytes(audioPlayer(type, "album|albumId|3|trackId"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        speechlet.shutdown();
+    }
+
+    @Benchmark
+    public byte[] fastPath() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64);
+        handler.handleRequest(new ByteArrayInputStream(request), output, null);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] speechletDispatch() throws Exception {
+        return sdkHandler.handleSpeechletCall(speechlet, request);
+    }
+}
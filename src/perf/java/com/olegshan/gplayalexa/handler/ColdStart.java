@@ -0,0 +1,82 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.olegshan.gplayalexa.logging.Logging;
+import com.olegshan.gplayalexa.metrics.Metrics;
+import com.olegshan.gplayalexa.perf.FakeGoogleMusicServer;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static com.olegshan.gplayalexa.perf.AlexaRequests.*;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class ColdStart {
+    static final String FIRST_RESPONSE = "first-response-micros=";
+    static final int    ALBUMS         = 20;
+    static final int    TRACKS         = 12;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            firstResponse(Integer.parseInt(args[0]));
+        } else {
+            try (FakeGoogleMusicServer server = new FakeGoogleMusicServer(ALBUMS, TRACKS, 0, 0, 0)) {
+                GoogleMusicRequestStreamHandler handler = firstResponse(server.port());
+                train(handler, server);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static GoogleMusicRequestStreamHandler firstResponse(int port) throws IOException {
+        long start = System.nanoTime();
+        Logging.configure();
+        Metrics.metrics().startReporting(SECONDS.toMillis(60), System.out::println);
+        GPlayMusic api = FakeGoogleMusicServer.api(port);
+        GoogleMusicRequestStreamHandler handler = new GoogleMusicRequestStreamHandler(
+            new GoogleMusicSpeechlet(() -> api), Collections.singleton(APPLICATION_ID));
+
+        String response = handle(handler, intent("Album", "albumName", "Album 0", null));
+        long micros = NANOSECONDS.toMicros(System.nanoTime() - start);
+        if (!response.contains("AudioPlayer.Play"))
+            throw new IllegalStateException("Unexpected first response " + response);
+        System.out.println(FIRST_RESPONSE + micros);
+        return handler;
+    }
+
+    private static void train(GoogleMusicRequestStreamHandler handler, FakeGoogleMusicServer server)
+        throws IOException {
+        for (int album = 0; album < 3; album++) {
+            String token = albumToken(server.albumId(album), 0, server.trackId(album, 0));
+            String next = albumToken(server.albumId(album), 1, server.trackId(album, 1));
+            handle(handler, intent("Album", "albumName", server.albumName(album), null));
+            handle(handler, audioPlayer("AudioPlayer.PlaybackStarted", token));
+            handle(handler, audioPlayer("AudioPlayer.PlaybackNearlyFinished", token));
+            handle(handler, audioPlayer("AudioPlayer.PlaybackFinished", token));
+            handle(handler, intent("AMAZON.NextIntent", null, null, token));
+            handle(handler, intent("AMAZON.PreviousIntent", null, null, next));
+            handle(handler, intent("AMAZON.PauseIntent", null, null, token));
+            handle(handler, intent("AMAZON.ResumeIntent", null, null, token));
+            handle(handler, audioPlayer("AudioPlayer.PlaybackStopped", token));
+            handle(handler, intent("SingleSong", "song", server.trackTitle(album, 1), null));
+            handle(handler, intent("PlayAnything", "query", server.albumName(album), null));
+            handle(handler, intent("ShuffleLibrary", null, null, null));
+            handle(handler, intent("AMAZON.HelpIntent", null, null, null));
+        }
+    }
+
+    private static String handle(GoogleMusicRequestStreamHandler handler, String request) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+        try {
+            handler.handleRequest(new ByteArrayInputStream(bytes(request)), output, null);
+        } catch (RuntimeException e) {
+            System.out.println("Request failed during training: " + e);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,140 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.olegshan.gplayalexa.perf.FakeGoogleMusicServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class ColdStartBenchmark {
+    private final Options               options;
+    private final FakeGoogleMusicServer server;
+
+    ColdStartBenchmark(Options options, FakeGoogleMusicServer server) {
+        this.options = options;
+        this.server = server;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        try (FakeGoogleMusicServer server = new FakeGoogleMusicServer(ColdStart.ALBUMS, ColdStart.TRACKS, 0, 0, 0)) {
+            new ColdStartBenchmark(options, server).run();
+        }
+        System.exit(0);
+    }
+
+    void run() throws IOException, InterruptedException {
+        System.out.printf("Cold start, %d runs per variant, time to the first Album response%n", options.runs);
+        System.out.printf("%n%-24s %10s %12s %12s %12s %12s%n", "variant", "jar KB", "process p50", "process min",
+            "handler p50", "handler min");
+        measure("shaded jar", options.shaded, Collections.emptyList());
+        measure("minimized jar", options.minimized, Collections.emptyList());
+        if (Files.exists(Paths.get(options.archive)))
+            measure("minimized jar + AppCDS", options.minimized,
+                Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + options.archive));
+        else
+            System.out.printf("%-24s no archive at %s%n", "minimized jar + AppCDS", options.archive);
+    }
+
+    private void measure(String variant, String jar, List<String> jvmOptions)
+        throws IOException, InterruptedException {
+        if (!Files.exists(Paths.get(jar))) {
+            System.out.printf("%-24s no jar at %s%n", variant, jar);
+            return;
+        }
+
+        start(jar, jvmOptions);
+        long[] process = new long[options.runs];
+        long[] handler = new long[options.runs];
+        for (int run = 0; run < options.runs; run++) {
+            long start = System.nanoTime();
+            handler[run] = start(jar, jvmOptions);
+            process[run] = NANOSECONDS.toMicros(System.nanoTime() - start);
+        }
+        Arrays.sort(process);
+        Arrays.sort(handler);
+        System.out.printf("%-24s %10d %12.1f %12.1f %12.1f %12.1f%n", variant, Files.size(Paths.get(jar)) / 1024,
+            millis(process[process.length / 2]), millis(process[0]),
+            millis(handler[handler.length / 2]), millis(handler[0]));
+    }
+
+    private long start(String jar, List<String> jvmOptions) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-classpath");
+        command.add(jar + File.pathSeparator + options.classes);
+        command.add(ColdStart.class.getName());
+        command.add(String.valueOf(server.port()));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long handlerMicros = -1;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(ColdStart.FIRST_RESPONSE)) {
+                    handlerMicros = Long.parseLong(line.substring(ColdStart.FIRST_RESPONSE.length()));
+                    break;
+                }
+                output.add(line);
+            }
+        }
+        process.destroy();
+        process.waitFor();
+        if (handlerMicros < 0)
+            throw new IllegalStateException("Cold start didn't respond:\n" + String.join("\n", output));
+        return handlerMicros;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    static class Options {
+        int    runs      = 10;
+        String shaded    = "target/gplay-alexa-0.0.1-SNAPSHOT.jar";
+        String minimized = "target/gplay-alexa-0.0.1-SNAPSHOT-min.jar";
+        String archive   = "target/gplay-alexa-0.0.1-SNAPSHOT.jsa";
+        String classes   = "target/gplay-alexa-0.0.1-SNAPSHOT-tests.jar";
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+                String value = parts.length > 1 ? parts[1] : "";
+                switch (parts[0]) {
+                    case "runs":
+                        options.runs = Integer.parseInt(value);
+                        break;
+                    case "shaded":
+                        options.shaded = value;
+                        break;
+                    case "minimized":
+                        options.minimized = value;
+                        break;
+                    case "archive":
+                        options.archive = value;
+                        break;
+                    case "classes":
+                        options.classes = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            return options;
+        }
+    }
+}
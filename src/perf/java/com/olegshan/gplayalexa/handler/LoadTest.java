@@ -0,0 +1,317 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.olegshan.gplayalexa.perf.FakeGoogleMusicServer;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.olegshan.gplayalexa.perf.AlexaRequests.*;
+
+public class LoadTest {
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Options                         options;
+    private final FakeGoogleMusicServer           server;
+    private final GoogleMusicRequestStreamHandler handler;
+    private final Map<RequestType, Histogram>     latencies = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, AtomicLong>    errors    = new EnumMap<>(RequestType.class);
+
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    LoadTest(Options options, FakeGoogleMusicServer server) {
+        this.options = options;
+        this.server = server;
+        GPlayMusic api = server.api();
+        this.handler = new GoogleMusicRequestStreamHandler(new GoogleMusicSpeechlet(() -> api),
+            Collections.singleton(APPLICATION_ID));
+        for (RequestType type : RequestType.values()) {
+            latencies.put(type, new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3));
+            errors.put(type, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        try (FakeGoogleMusicServer server = new FakeGoogleMusicServer(options.albums, options.tracksPerAlbum,
+            options.latencyMillis, options.jitterMillis, options.failureRate)) {
+            new LoadTest(options, server).run();
+        }
+        System.exit(0);
+    }
+
+    void run() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(options.concurrency);
+        for (int worker = 0; worker < options.concurrency; worker++) {
+            List<Device> devices = new ArrayList<>();
+            for (int device = worker; device < options.devices; device += options.concurrency)
+                devices.add(new Device("amzn1.ask.device.load" + device));
+            Thread thread = new Thread(() -> {
+                try {
+                    drive(devices);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-driver-" + worker);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        System.out.printf("Warming up for %d s with %d workers and %d devices%n", options.warmupSeconds,
+            options.concurrency, options.devices);
+        TimeUnit.SECONDS.sleep(options.warmupSeconds);
+
+        recording = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(options.durationSeconds);
+        running = false;
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+
+        report(elapsedNanos);
+    }
+
+    private void drive(List<Device> devices) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+        while (running && !devices.isEmpty()) {
+            Device device = devices.get(random.nextInt(devices.size()));
+            RequestType type = device.hasQueue() ? options.mix.next(random) : RequestType.ALBUM;
+            byte[] request = bytes(request(type, device, random));
+
+            output.reset();
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                handler.handleRequest(new ByteArrayInputStream(request), output, null);
+            } catch (Exception e) {
+                failed = true;
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+            if (recording) {
+                latencies.get(type).recordValue(Math.min(micros, HIGHEST_LATENCY_MICROS));
+                if (failed || !new String(output.toByteArray()).startsWith("{\"version\""))
+                    errors.get(type).incrementAndGet();
+            }
+        }
+    }
+
+    private String request(RequestType type, Device device, Random random) {
+        String token = device.token(server);
+        switch (type) {
+            case ALBUM:
+                device.playAlbum(random.nextInt(server.albums()));
+                return intent(device.id, "Album", "albumName", server.albumName(device.album), token);
+            case SINGLE_SONG:
+                device.playSong(random.nextInt(server.albums()), random.nextInt(server.tracksPerAlbum()));
+                return intent(device.id, "SingleSong", "song", server.trackTitle(device.album, device.track), token);
+            case NEXT:
+                device.move(1, server.tracksPerAlbum());
+                return intent(device.id, "AMAZON.NextIntent", null, null, token);
+            case PREVIOUS:
+                device.move(-1, server.tracksPerAlbum());
+                return intent(device.id, "AMAZON.PreviousIntent", null, null, token);
+            case PLAYBACK_NEARLY_FINISHED:
+                device.move(1, server.tracksPerAlbum());
+                return audioPlayer(device.id, type.requestType, token);
+            default:
+                return audioPlayer(device.id, type.requestType, token);
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        Histogram total = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        long totalErrors = 0;
+
+        System.out.printf("%n%-26s %10s %8s %10s %10s %10s %10s%n", "request", "count", "errors", "p50 ms",
+            "p99 ms", "p99.9 ms", "max ms");
+        for (RequestType type : RequestType.values()) {
+            Histogram histogram = latencies.get(type);
+            long typeErrors = errors.get(type).get();
+            total.add(histogram);
+            totalErrors += typeErrors;
+            if (histogram.getTotalCount() > 0)
+                printRow(type.name(), histogram, typeErrors);
+        }
+        printRow("TOTAL", total, totalErrors);
+
+        System.out.printf("%nThroughput: %.1f requests/s over %.1f s%n", total.getTotalCount() / seconds, seconds);
+        System.out.printf("Fake Google Music: %d requests, %d injected failures%n", server.requests(), server.failures());
+    }
+
+    private static void printRow(String name, Histogram histogram, long errors) {
+        System.out.printf("%-26s %10d %8d %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(), errors,
+            millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+            millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    enum RequestType {
+        PLAYBACK_STARTED("AudioPlayer.PlaybackStarted", 30),
+        PLAYBACK_NEARLY_FINISHED("AudioPlayer.PlaybackNearlyFinished", 25),
+        PLAYBACK_FINISHED("AudioPlayer.PlaybackFinished", 25),
+        PLAYBACK_STOPPED("AudioPlayer.PlaybackStopped", 5),
+        ALBUM("IntentRequest", 5),
+        SINGLE_SONG("IntentRequest", 5),
+        NEXT("IntentRequest", 3),
+        PREVIOUS("IntentRequest", 2);
+
+        final String requestType;
+        final int    defaultWeight;
+
+        RequestType(String requestType, int defaultWeight) {
+            this.requestType = requestType;
+            this.defaultWeight = defaultWeight;
+        }
+    }
+
+    static class Mix {
+        private final RequestType[] types;
+        private final int[]         cumulativeWeights;
+
+        Mix(Map<RequestType, Integer> weights) {
+            types = weights.keySet().toArray(new RequestType[0]);
+            cumulativeWeights = new int[types.length];
+            int total = 0;
+            for (int i = 0; i < types.length; i++) {
+                total += weights.get(types[i]);
+                cumulativeWeights[i] = total;
+            }
+            if (total <= 0)
+                throw new IllegalArgumentException("Request mix must have a positive weight");
+        }
+
+        static Mix parse(String mix) {
+            Map<RequestType, Integer> weights = new EnumMap<>(RequestType.class);
+            if (mix == null || mix.isEmpty()) {
+                for (RequestType type : RequestType.values())
+                    weights.put(type, type.defaultWeight);
+            } else {
+                for (String entry : mix.split(",")) {
+                    String[] parts = entry.split(":");
+                    weights.put(RequestType.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+                }
+            }
+            return new Mix(weights);
+        }
+
+        RequestType next(Random random) {
+            int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < types.length; i++) {
+                if (value < cumulativeWeights[i])
+                    return types[i];
+            }
+            return types[types.length - 1];
+        }
+    }
+
+    static class Device {
+        final String id;
+
+        int     album = -1;
+        int     track;
+        boolean song;
+
+        Device(String id) {
+            this.id = id;
+        }
+
+        boolean hasQueue() {
+            return album >= 0;
+        }
+
+        String token(FakeGoogleMusicServer server) {
+            if (album < 0)
+                return null;
+            String trackId = server.trackId(album, track);
+            return song ? songToken(trackId) : albumToken(server.albumId(album), track, trackId);
+        }
+
+        void playAlbum(int album) {
+            this.album = album;
+            this.track = 0;
+            this.song = false;
+        }
+
+        void playSong(int album, int track) {
+            this.album = album;
+            this.track = track;
+            this.song = true;
+        }
+
+        void move(int offset, int tracks) {
+            if (!song)
+                track = Math.floorMod(track + offset, tracks);
+        }
+    }
+
+    static class Options {
+        int    concurrency     = 16;
+        int    devices         = 1000;
+        int    warmupSeconds   = 10;
+        int    durationSeconds = 60;
+        int    albums          = 200;
+        int    tracksPerAlbum  = 12;
+        long   latencyMillis   = 40;
+        long   jitterMillis    = 20;
+        double failureRate     = 0;
+        Mix    mix             = Mix.parse(null);
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+                String value = parts.length > 1 ? parts[1] : "";
+                switch (parts[0]) {
+                    case "concurrency":
+                        options.concurrency = Integer.parseInt(value);
+                        break;
+                    case "devices":
+                        options.devices = Integer.parseInt(value);
+                        break;
+                    case "warmup":
+                        options.warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "duration":
+                        options.durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "albums":
+                        options.albums = Integer.parseInt(value);
+                        break;
+                    case "tracks":
+                        options.tracksPerAlbum = Integer.parseInt(value);
+                        break;
+                    case "latency":
+                        options.latencyMillis = Long.parseLong(value);
+                        break;
+                    case "jitter":
+                        options.jitterMillis = Long.parseLong(value);
+                        break;
+                    case "failure-rate":
+                        options.failureRate = Double.parseDouble(value);
+                        break;
+                    case "mix":
+                        options.mix = Mix.parse(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.olegshan.gplayalexa.logging.Logging;
+import com.olegshan.gplayalexa.perf.StubGoogleMusic;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import org.apache.log4j.FileAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.olegshan.gplayalexa.perf.AlexaRequests.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoggingBenchmark {
+    private static final String PATTERN = "%d{yy/MM/dd HH:mm:ss} %p %c{2}: %m%n";
+
+    @Param({"sync", "async"})
+    private String appender;
+
+    @Param({"PlaybackNearlyFinished", "PlaybackStarted", "SingleSong"})
+    private String request;
+
+    private Path                            logFile;
+    private byte[]                          json;
+    private GoogleMusicSpeechlet            speechlet;
+    private GoogleMusicRequestStreamHandler handler;
+
+    @Setup
+    public void setUp() throws IOException {
+        logFile = Files.createTempFile("logging-benchmark", ".log");
+        Logger root = Logger.getRootLogger();
+        root.removeAllAppenders();
+        root.setLevel(Level.INFO);
+        root.addAppender(new FileAppender(new PatternLayout(PATTERN), logFile.toString(), true));
+        if ("async".equals(appender))
+            Logging.makeAsync(root, Logging.DEFAULT_BUFFER_SIZE);
+
+        GPlayMusic api = StubGoogleMusic.create();
+        speechlet = new GoogleMusicSpeechlet(() -> api);
+        handler = new GoogleMusicRequestStreamHandler(speechlet, Collections.singleton(APPLICATION_ID));
+        json = bytes(RequestHandlerBenchmark.request(request));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        speechlet.shutdown();
+        Logger.getRootLogger().removeAllAppenders();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public byte[] handleRequest() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
+        handler.handleRequest(new ByteArrayInputStream(json), output, null);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,65 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.olegshan.gplayalexa.perf.StubGoogleMusic;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.olegshan.gplayalexa.perf.AlexaRequests.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RequestHandlerBenchmark {
+    private static final String CURRENT_TOKEN = albumToken(StubGoogleMusic.ALBUM_ID, 5, StubGoogleMusic.trackId(5));
+
+    @Param({"SingleSong", "Album", "Next", "Previous", "PlaybackNearlyFinished", "PlaybackStarted"})
+    private String request;
+
+    private byte[]                          json;
+    private GoogleMusicSpeechlet            speechlet;
+    private GoogleMusicRequestStreamHandler handler;
+
+    @Setup
+    public void setUp() {
+        GPlayMusic api = StubGoogleMusic.create();
+        speechlet = new GoogleMusicSpeechlet(() -> api);
+        handler = new GoogleMusicRequestStreamHandler(speechlet, Collections.singleton(APPLICATION_ID));
+        json = bytes(request(request));
+    }
+
+    @TearDown
+    public void tearDown() {
+        speechlet.shutdown();
+    }
+
+    @Benchmark
+    public byte[] handleRequest() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
+        handler.handleRequest(new ByteArrayInputStream(json), output, null);
+        return output.toByteArray();
+    }
+
+    static String request(String name) {
+        switch (name) {
+            case "SingleSong":
+                return intent("SingleSong", "song", "benchmark song", null);
+            case "Album":
+                return intent("Album", "albumName", "benchmark album", null);
+            case "Next":
+                return intent("AMAZON.NextIntent", null, null, CURRENT_TOKEN);
+            case "Previous":
+                return intent("AMAZON.PreviousIntent", null, null, CURRENT_TOKEN);
+            default:
+                return audioPlayer("AudioPlayer." + name, CURRENT_TOKEN);
+        }
+    }
+}
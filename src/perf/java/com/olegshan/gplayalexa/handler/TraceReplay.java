@@ -0,0 +1,171 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.olegshan.gplayalexa.perf.RecordedGoogleMusic;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import com.olegshan.gplayalexa.trace.TraceReader;
+import com.olegshan.gplayalexa.trace.TraceRecord;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.*;
+
+public class TraceReplay {
+    private static final long HIGHEST_LATENCY_MICROS = MINUTES.toMicros(1);
+
+    private final Options                         options;
+    private final List<TraceRecord>               requests  = new ArrayList<>();
+    private final Map<Long, TraceRecord>          responses = new HashMap<>();
+    private final RecordedGoogleMusic             google;
+    private final GoogleMusicRequestStreamHandler handler;
+    private final Map<String, Stats>              stats     = new ConcurrentSkipListMap<>();
+
+    TraceReplay(Options options, List<TraceRecord> records) {
+        this.options = options;
+        for (TraceRecord record : records) {
+            if (record.type == TraceRecord.Type.REQUEST)
+                requests.add(record);
+            else if (record.type == TraceRecord.Type.RESPONSE)
+                responses.put(record.requestId, record);
+        }
+        requests.sort(Comparator.comparingLong(record -> record.timestampMicros));
+        this.google = new RecordedGoogleMusic(records, options.speed);
+        GPlayMusic api = google.api();
+        this.handler = new GoogleMusicRequestStreamHandler(new GoogleMusicSpeechlet(() -> api),
+            Collections.emptySet());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        new TraceReplay(options, TraceReader.readAll(Paths.get(options.trace))).run();
+        System.exit(0);
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("Replaying %d requests from %s at %s%n", requests.size(), options.trace,
+            options.speed > 0 ? options.speed + "x recorded speed" : "full speed");
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "trace-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.nanoTime();
+        long traceMicros = 0;
+        long previous = requests.isEmpty() ? 0 : requests.get(0).timestampMicros;
+        List<Future<?>> replayed = new ArrayList<>();
+        for (TraceRecord request : requests) {
+            if (options.speed <= 0) {
+                replay(request);
+                continue;
+            }
+
+            traceMicros += Math.min(request.timestampMicros - previous, SECONDS.toMicros(options.maxIdleSeconds));
+            previous = request.timestampMicros;
+            long wait = start + (long) (MICROSECONDS.toNanos(traceMicros) / options.speed) - System.nanoTime();
+            if (wait > 0)
+                NANOSECONDS.sleep(wait);
+            replayed.add(executor.submit(() -> replay(request)));
+        }
+        for (Future<?> future : replayed) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        report(System.nanoTime() - start);
+        executor.shutdownNow();
+    }
+
+    private void replay(TraceRecord request) {
+        RequestPeek peek = RequestPeek.of(request.body);
+        Stats typeStats = stats.computeIfAbsent(peek.type() != null ? peek.type() : "Unknown", type -> new Stats());
+        ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            handler.handleRequest(new ByteArrayInputStream(request.body), output, null);
+        } catch (Exception e) {
+            failed = true;
+        }
+        typeStats.replayed.recordValue(Math.min(NANOSECONDS.toMicros(System.nanoTime() - start),
+            HIGHEST_LATENCY_MICROS));
+
+        TraceRecord recorded = responses.get(request.requestId);
+        if (recorded != null) {
+            typeStats.recorded.recordValue(Math.min(recorded.latencyMicros, HIGHEST_LATENCY_MICROS));
+            if (!Arrays.equals(recorded.body, output.toByteArray()))
+                typeStats.differing.incrementAndGet();
+        }
+        if (failed)
+            typeStats.errors.incrementAndGet();
+    }
+
+    private void report(long elapsedNanos) {
+        System.out.printf("%n%-36s %8s %8s %9s %12s %12s %12s %12s %10s%n", "request", "count", "errors",
+            "differing", "recorded p50", "recorded p99", "replay p50", "replay p99", "replay max");
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats typeStats = entry.getValue();
+            System.out.printf("%-36s %8d %8d %9d %12.2f %12.2f %12.2f %12.2f %10.2f%n", entry.getKey(),
+                typeStats.replayed.getTotalCount(), typeStats.errors.get(), typeStats.differing.get(),
+                millis(typeStats.recorded.getValueAtPercentile(50)),
+                millis(typeStats.recorded.getValueAtPercentile(99)),
+                millis(typeStats.replayed.getValueAtPercentile(50)),
+                millis(typeStats.replayed.getValueAtPercentile(99)),
+                millis(typeStats.replayed.getMaxValue()));
+        }
+        System.out.printf("%nReplayed in %.1f s, Google Music calls: %d answered from the trace, %d not in the trace%n",
+            elapsedNanos / 1e9, google.served(), google.unmatched());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    static class Stats {
+        final Histogram  recorded  = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+        final Histogram  replayed  = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+        final AtomicLong errors    = new AtomicLong();
+        final AtomicLong differing = new AtomicLong();
+    }
+
+    static class Options {
+        String trace;
+        double speed          = 1;
+        long   maxIdleSeconds = 5;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+                String value = parts.length > 1 ? parts[1] : "";
+                switch (parts[0]) {
+                    case "trace":
+                        options.trace = value;
+                        break;
+                    case "speed":
+                        options.speed = Double.parseDouble(value);
+                        break;
+                    case "max-idle":
+                        options.maxIdleSeconds = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (options.trace == null)
+                throw new IllegalArgumentException("--trace is required");
+            return options;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.olegshan.gplayalexa.perf;
+
+import java.nio.charset.StandardCharsets;
+
+public class AlexaRequests {
+    public static final String APPLICATION_ID = "amzn1.ask.skill.benchmark";
+    public static final String DEVICE_ID      = "amzn1.ask.device.benchmark";
+
+    public static String intent(String name, String slot, String value, String audioPlayerToken) {
+        return intent(DEVICE_ID, name, slot, value, audioPlayerToken);
+    }
+
+    public static String intent(String deviceId, String name, String slot, String value, String audioPlayerToken) {
+        String slots = slot != null ? "{\"" + slot + "\":{\"name\":\"" + slot + "\",\"value\":\"" + value + "\"}}" : "{}";
+        return "{\"version\":\"1.0\","
+            + "\"session\":{\"new\":false,\"sessionId\":\"amzn1.echo-api.session.benchmark\","
+            + "\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},"
+            + "\"user\":{\"userId\":\"amzn1.ask.account.benchmark\"}},"
+            + context(deviceId, audioPlayerToken) + ","
+            + "\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"amzn1.echo-api.request.benchmark\","
+            + "\"timestamp\":\"2019-07-01T10:00:00Z\",\"locale\":\"en-US\","
+            + "\"intent\":{\"name\":\"" + name + "\",\"slots\":" + slots + "}}}";
+    }
+
+    public static String audioPlayer(String type, String token) {
+        return audioPlayer(DEVICE_ID, type, token);
+    }
+
+    public static String audioPlayer(String deviceId, String type, String token) {
+        return "{\"version\":\"1.0\","
+            + context(deviceId, token) + ","
+            + "\"request\":{\"type\":\"" + type + "\",\"requestId\":\"amzn1.echo-api.request.benchmark\","
+            + "\"timestamp\":\"2019-07-01T10:00:00Z\",\"locale\":\"en-US\",\"token\":\"" + token + "\","
+            + "\"offsetInMilliseconds\":0}}";
+    }
+
+    public static String albumToken(String albumId, int position, String trackId) {
+        return "album|" + albumId + "|" + position + "|" + trackId;
+    }
+
+    public static String songToken(String trackId) {
+        return "song|" + trackId + "|0|" + trackId;
+    }
+
+    public static byte[] bytes(String request) {
+        return request.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String context(String deviceId, String audioPlayerToken) {
+        String audioPlayer = audioPlayerToken != null
+            ? "\"AudioPlayer\":{\"token\":\"" + audioPlayerToken + "\",\"offsetInMilliseconds\":0,\"playerActivity\":\"PLAYING\"},"
+            : "";
+        return "\"context\":{" + audioPlayer
+            + "\"System\":{\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},"
+            + "\"user\":{\"userId\":\"amzn1.ask.account.benchmark\"},"
+            + "\"device\":{\"deviceId\":\"" + deviceId + "\",\"supportedInterfaces\":{\"AudioPlayer\":{}}},"
+            + "\"apiEndpoint\":\"https://api.amazonalexa.com\"}}";
+    }
+}
@@ -0,0 +1,305 @@
+package com.olegshan.gplayalexa.perf;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import svarzee.gps.gpsoauth.AuthToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FakeGoogleMusicServer implements AutoCloseable {
+    public static final String AUTH_TOKEN = "fake-auth-token";
+
+    private static final String SJ_PATH         = "/sj/v2.5/";
+    private static final int    TRACK_RESULT    = 1;
+    private static final int    ALBUM_RESULT    = 3;
+    private static final long   URL_TTL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final int    LIBRARY_ALBUMS  = 100;
+
+    private final int             albums;
+    private final int             tracksPerAlbum;
+    private final long            latencyMillis;
+    private final long            jitterMillis;
+    private final double          failureRate;
+    private final HttpServer      server;
+    private final ExecutorService executor;
+    private final AtomicLong      requests = new AtomicLong();
+    private final AtomicLong      failures = new AtomicLong();
+
+    public FakeGoogleMusicServer(int albums, int tracksPerAlbum, long latencyMillis, long jitterMillis,
+                                 double failureRate) throws IOException {
+        this.albums = albums;
+        this.tracksPerAlbum = tracksPerAlbum;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-google-music");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public OkHttpClient.Builder httpClient() {
+        return httpClient(port());
+    }
+
+    public GPlayMusic api() {
+        return api(port());
+    }
+
+    public static OkHttpClient.Builder httpClient(int port) {
+        return new OkHttpClient.Builder().addInterceptor(chain -> {
+            Request request = chain.request();
+            HttpUrl url = request.url().newBuilder()
+                .scheme("http")
+                .host("127.0.0.1")
+                .port(port)
+                .build();
+            return chain.proceed(request.newBuilder().url(url).build());
+        });
+    }
+
+    public static GPlayMusic api(int port) {
+        return new GPlayMusic.Builder()
+            .setAuthToken(new AuthToken(AUTH_TOKEN))
+            .setHttpClientBuilder(httpClient(port))
+            .build();
+    }
+
+    public int albums() {
+        return albums;
+    }
+
+    public int tracksPerAlbum() {
+        return tracksPerAlbum;
+    }
+
+    public String albumId(int album) {
+        return String.format("Bfake%06d", album);
+    }
+
+    public String albumName(int album) {
+        return "Album " + album;
+    }
+
+    public String trackId(int album, int track) {
+        return String.format("Tfake%06d%03d", album, track);
+    }
+
+    public String trackTitle(int album, int track) {
+        return "Song " + album + " " + track;
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            simulateLatency();
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failures.incrementAndGet();
+                respond(exchange, 503, "text/plain", "Service Unavailable");
+                return;
+            }
+            route(exchange, exchange.getRequestURI().getPath(), query(exchange.getRequestURI().getRawQuery()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange, String path, Map<String, String> query) throws IOException {
+        if (path.endsWith("/auth")) {
+            respond(exchange, 200, "text/plain", "Token=oauth2rt_fake\nAuth=" + AUTH_TOKEN + "\nExpiry=0\n");
+        } else if (path.equals(SJ_PATH + "config")) {
+            respond(exchange, 200, "application/json", "{\"kind\":\"sj#configList\",\"data\":{\"entries\":["
+                + "{\"kind\":\"sj#configEntry\",\"key\":\"isNautilusUser\",\"value\":\"true\"}]}}");
+        } else if (path.equals(SJ_PATH + "devicemanagementinfo")) {
+            respond(exchange, 200, "application/json", "{\"kind\":\"sj#devicemanagementinfoList\",\"data\":{\"items\":["
+                + "{\"kind\":\"sj#devicemanagementinfo\",\"id\":\"fake-device\",\"friendlyName\":\"Fake\","
+                + "\"type\":\"ANDROID\",\"lastAccessedTimeMs\":\"0\"}]}}");
+        } else if (path.equals(SJ_PATH + "query")) {
+            respond(exchange, 200, "application/json", search(query.getOrDefault("q", ""), query.get("ct"),
+                Integer.parseInt(query.getOrDefault("max-results", "10"))));
+        } else if (path.equals(SJ_PATH + "fetchalbum")) {
+            int album = albumIndex(query.get("nid"));
+            if (album < 0)
+                respond(exchange, 404, "text/plain", "Not Found");
+            else
+                respond(exchange, 200, "application/json", albumJson(album, true));
+        } else if (path.equals(SJ_PATH + "fetchtrack")) {
+            String id = query.getOrDefault("nid", "");
+            int album = id.startsWith("T") && id.length() == 14 ? albumIndex("B" + id.substring(1, 11)) : -1;
+            int track = album < 0 ? -1 : index(id.substring(11), tracksPerAlbum);
+            if (track < 0)
+                respond(exchange, 404, "text/plain", "Not Found");
+            else
+                respond(exchange, 200, "application/json", trackJson(album, track));
+        } else if (path.equals(SJ_PATH + "trackfeed")) {
+            respond(exchange, 200, "application/json", libraryJson());
+        } else if (path.endsWith("/mplay")) {
+            String id = query.getOrDefault("songid", query.getOrDefault("mjck", "unknown"));
+            long expire = System.currentTimeMillis() / 1000 + URL_TTL_SECONDS;
+            exchange.getResponseHeaders().set("Location",
+                "http://127.0.0.1:" + port() + "/stream/" + id + "?expire=" + expire + "&sig=fake");
+            respond(exchange, 302, "text/plain", "");
+        } else if (path.startsWith("/stream/")) {
+            respond(exchange, 200, "audio/mpeg", "");
+        } else {
+            respond(exchange, 404, "text/plain", "Not Found");
+        }
+    }
+
+    private String search(String query, String types, int maxResults) {
+        String normalized = query.toLowerCase();
+        boolean tracks = types == null || types.contains(String.valueOf(TRACK_RESULT));
+        boolean albums = types == null || types.contains(String.valueOf(ALBUM_RESULT));
+
+        StringBuilder entries = new StringBuilder();
+        int found = 0;
+        for (int album = 0; album < this.albums && found < maxResults; album++) {
+            if (albums && albumName(album).toLowerCase().equals(normalized)) {
+                append(entries, "{\"type\":\"" + ALBUM_RESULT + "\",\"score\":1.0,\"album\":" + albumJson(album, false) + "}");
+                found++;
+            }
+            for (int track = 0; tracks && track < tracksPerAlbum && found < maxResults; track++) {
+                if (trackTitle(album, track).toLowerCase().equals(normalized)) {
+                    append(entries, "{\"type\":\"" + TRACK_RESULT + "\",\"score\":1.0,\"track\":" + trackJson(album, track) + "}");
+                    found++;
+                }
+            }
+        }
+        return "{\"kind\":\"sj#searchresponse\",\"entries\":[" + entries + "],"
+            + "\"clusterDetail\":[{\"cluster\":{\"type\":\"" + (albums && !tracks ? ALBUM_RESULT : TRACK_RESULT) + "\"},"
+            + "\"entries\":[" + entries + "]}]}";
+    }
+
+    private String albumJson(int album, boolean includeTracks) {
+        StringBuilder json = new StringBuilder("{\"kind\":\"sj#album\",\"albumId\":\"").append(albumId(album))
+            .append("\",\"name\":\"").append(albumName(album))
+            .append("\",\"albumArtist\":\"").append(artist(album))
+            .append("\",\"artist\":\"").append(artist(album))
+            .append("\",\"year\":2019");
+        if (includeTracks) {
+            StringBuilder tracks = new StringBuilder();
+            for (int track = 0; track < tracksPerAlbum; track++)
+                append(tracks, trackJson(album, track));
+            json.append(",\"tracks\":[").append(tracks).append("]");
+        }
+        return json.append("}").toString();
+    }
+
+    private String libraryJson() {
+        StringBuilder items = new StringBuilder();
+        for (int album = 0; album < Math.min(albums, LIBRARY_ALBUMS); album++) {
+            for (int track = 0; track < tracksPerAlbum; track++) {
+                if (items.length() > 0)
+                    items.append(',');
+                items.append(trackJson(album, track));
+            }
+        }
+        return "{\"kind\":\"sj#trackList\",\"data\":{\"items\":[" + items + "]}}";
+    }
+
+    private String trackJson(int album, int track) {
+        return "{\"kind\":\"sj#track\",\"storeId\":\"" + trackId(album, track) + "\",\"nid\":\"" + trackId(album, track)
+            + "\",\"title\":\"" + trackTitle(album, track) + "\",\"artist\":\"" + artist(album)
+            + "\",\"album\":\"" + albumName(album) + "\",\"albumArtist\":\"" + artist(album)
+            + "\",\"albumId\":\"" + albumId(album) + "\",\"trackNumber\":" + (track + 1)
+            + ",\"durationMillis\":\"240000\",\"trackType\":\"7\"}";
+    }
+
+    private String artist(int album) {
+        return "Artist " + album % 50;
+    }
+
+    private int albumIndex(String albumId) {
+        return albumId != null && albumId.startsWith("Bfake") ? index(albumId.substring(5), albums) : -1;
+    }
+
+    private static int index(String value, int size) {
+        try {
+            int index = Integer.parseInt(value);
+            return index >= 0 && index < size ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void simulateLatency() {
+        long delay = latencyMillis;
+        if (jitterMillis > 0)
+            delay += (long) (-jitterMillis * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        if (delay <= 0)
+            return;
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void append(StringBuilder list, String element) {
+        if (list.length() > 0)
+            list.append(',');
+        list.append(element);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null)
+            return query;
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0)
+                query.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+        }
+        return query;
+    }
+}
@@ -0,0 +1,103 @@
+package com.olegshan.gplayalexa.perf;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.olegshan.gplayalexa.trace.TraceRecord;
+import okhttp3.*;
+import svarzee.gps.gpsoauth.AuthToken;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+public class RecordedGoogleMusic {
+    private static final Set<String> DECODED_HEADERS = new HashSet<>(Arrays.asList(
+        "content-length", "content-encoding", "transfer-encoding"));
+
+    private final Map<String, List<TraceRecord>> exchanges = new HashMap<>();
+    private final double                         speed;
+    private final AtomicLong                     served    = new AtomicLong();
+    private final AtomicLong                     unmatched = new AtomicLong();
+
+    public RecordedGoogleMusic(List<TraceRecord> records, double speed) {
+        this.speed = speed;
+        for (TraceRecord record : records) {
+            if (record.type == TraceRecord.Type.UPSTREAM)
+                exchanges.computeIfAbsent(key(record.method, record.url), key -> new LinkedList<>()).add(record);
+        }
+    }
+
+    public GPlayMusic api() {
+        return new GPlayMusic.Builder()
+            .setAuthToken(new AuthToken(FakeGoogleMusicServer.AUTH_TOKEN))
+            .setHttpClientBuilder(new OkHttpClient.Builder().addInterceptor(this::answer))
+            .build();
+    }
+
+    public long served() {
+        return served.get();
+    }
+
+    public long unmatched() {
+        return unmatched.get();
+    }
+
+    private Response answer(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        TraceRecord recorded = take(request.method(), request.url().toString());
+        Response.Builder response = new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1);
+        if (recorded == null) {
+            unmatched.incrementAndGet();
+            return response.code(404).message("Not in trace").body(ResponseBody.create(null, new byte[0])).build();
+        }
+
+        served.incrementAndGet();
+        simulateLatency(recorded.latencyMicros);
+        for (int i = 0; i < recorded.headers.length; i += 2) {
+            if (!DECODED_HEADERS.contains(recorded.headers[i].toLowerCase(Locale.ROOT)))
+                response.addHeader(recorded.headers[i], recorded.headers[i + 1]);
+        }
+        String contentType = recorded.header("Content-Type");
+        return response.code(recorded.status)
+            .message("Replayed")
+            .body(ResponseBody.create(contentType != null ? MediaType.parse(contentType) : null, recorded.body))
+            .build();
+    }
+
+    private synchronized TraceRecord take(String method, String url) {
+        List<TraceRecord> candidates = exchanges.get(key(method, url));
+        if (candidates == null || candidates.isEmpty())
+            return null;
+        if (candidates.size() == 1)
+            return candidates.get(0);
+
+        for (Iterator<TraceRecord> iterator = candidates.iterator(); iterator.hasNext(); ) {
+            TraceRecord candidate = iterator.next();
+            if (candidate.url.equals(url)) {
+                iterator.remove();
+                return candidate;
+            }
+        }
+        return candidates.remove(0);
+    }
+
+    private void simulateLatency(long latencyMicros) throws InterruptedIOException {
+        if (speed <= 0)
+            return;
+        try {
+            MICROSECONDS.sleep((long) (latencyMicros / speed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Replayed call was interrupted");
+        }
+    }
+
+    private static String key(String method, String url) {
+        int query = url.indexOf('?');
+        return method + " " + (query >= 0 ? url.substring(0, query) : url);
+    }
+}
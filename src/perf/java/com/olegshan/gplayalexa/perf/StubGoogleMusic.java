@@ -0,0 +1,111 @@
+package com.olegshan.gplayalexa.perf;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import okhttp3.*;
+import svarzee.gps.gpsoauth.AuthToken;
+
+public class StubGoogleMusic {
+    public static final String ALBUM_ID   = "Bbenchmarkalbum";
+    public static final int    ALBUM_SIZE = 12;
+    public static final long   URL_EXPIRY = 4_102_444_800L;
+
+    private static final String    SJ_PATH      = "/sj/v2.5/";
+    private static final String    TRACK_RESULT = "1";
+    private static final String    ALBUM_RESULT = "3";
+    private static final MediaType JSON         = MediaType.parse("application/json");
+
+    public static GPlayMusic create() {
+        return new GPlayMusic.Builder()
+            .setAuthToken(new AuthToken(FakeGoogleMusicServer.AUTH_TOKEN))
+            .setHttpClientBuilder(new OkHttpClient.Builder().addInterceptor(StubGoogleMusic::answer))
+            .build();
+    }
+
+    public static String trackId(int position) {
+        return "Tbenchmarktrack" + position;
+    }
+
+    private static Response answer(Interceptor.Chain chain) {
+        Request request = chain.request();
+        HttpUrl url = request.url();
+        String path = url.encodedPath();
+        if (path.endsWith("/mplay")) {
+            String id = url.queryParameter("songid") != null ? url.queryParameter("songid") : url.queryParameter("mjck");
+            Request stream = request.newBuilder()
+                .url("https://stream.benchmark/" + id + "?expire=" + URL_EXPIRY)
+                .build();
+            return response(stream, 200, MediaType.parse("audio/mpeg"), "");
+        }
+
+        String json = json(path, url);
+        return json != null
+            ? response(request, 200, JSON, json)
+            : response(request, 404, MediaType.parse("text/plain"), "Not Found");
+    }
+
+    private static String json(String path, HttpUrl url) {
+        if (path.equals(SJ_PATH + "config"))
+            return "{\"kind\":\"sj#configList\",\"data\":{\"entries\":["
+                + "{\"kind\":\"sj#configEntry\",\"key\":\"isNautilusUser\",\"value\":\"true\"}]}}";
+        if (path.equals(SJ_PATH + "devicemanagementinfo"))
+            return "{\"kind\":\"sj#devicemanagementinfoList\",\"data\":{\"items\":["
+                + "{\"kind\":\"sj#devicemanagementinfo\",\"id\":\"benchmark-device\",\"friendlyName\":\"Benchmark\","
+                + "\"type\":\"ANDROID\",\"lastAccessedTimeMs\":\"0\"}]}}";
+        if (path.equals(SJ_PATH + "query"))
+            return search(url.queryParameter("ct"));
+        if (path.equals(SJ_PATH + "fetchalbum"))
+            return ALBUM_ID.equals(url.queryParameter("nid")) ? albumJson(true) : null;
+        if (path.equals(SJ_PATH + "fetchtrack")) {
+            String id = url.queryParameter("nid");
+            for (int i = 0; i < ALBUM_SIZE; i++) {
+                if (trackId(i).equals(id))
+                    return trackJson(i);
+            }
+            return null;
+        }
+        if (path.equals(SJ_PATH + "trackfeed"))
+            return "{\"kind\":\"sj#trackList\",\"data\":{\"items\":[]}}";
+        return null;
+    }
+
+    private static String search(String types) {
+        boolean albums = types != null && types.contains(ALBUM_RESULT) && !types.contains(TRACK_RESULT);
+        String entry = albums
+            ? "{\"type\":\"" + ALBUM_RESULT + "\",\"score\":1.0,\"album\":" + albumJson(false) + "}"
+            : "{\"type\":\"" + TRACK_RESULT + "\",\"score\":1.0,\"track\":" + trackJson(0) + "}";
+        return "{\"kind\":\"sj#searchresponse\",\"entries\":[" + entry + "],"
+            + "\"clusterDetail\":[{\"cluster\":{\"type\":\"" + (albums ? ALBUM_RESULT : TRACK_RESULT) + "\"},"
+            + "\"entries\":[" + entry + "]}]}";
+    }
+
+    private static String albumJson(boolean includeTracks) {
+        StringBuilder json = new StringBuilder("{\"kind\":\"sj#album\",\"albumId\":\"").append(ALBUM_ID)
+            .append("\",\"name\":\"Benchmark Album\",\"albumArtist\":\"Benchmark Artist\"")
+            .append(",\"artist\":\"Benchmark Artist\",\"year\":2019");
+        if (includeTracks) {
+            json.append(",\"tracks\":[");
+            for (int i = 0; i < ALBUM_SIZE; i++)
+                json.append(i > 0 ? "," : "").append(trackJson(i));
+            json.append("]");
+        }
+        return json.append("}").toString();
+    }
+
+    private static String trackJson(int position) {
+        return "{\"kind\":\"sj#track\",\"id\":\"" + trackId(position) + "\",\"storeId\":\"" + trackId(position)
+            + "\",\"nid\":\"" + trackId(position) + "\",\"title\":\"Track " + position
+            + "\",\"artist\":\"Benchmark Artist\",\"album\":\"Benchmark Album\",\"albumArtist\":\"Benchmark Artist\""
+            + ",\"albumId\":\"" + ALBUM_ID + "\",\"trackNumber\":" + (position + 1)
+            + ",\"durationMillis\":\"240000\",\"trackType\":\"7\"}";
+    }
+
+    private static Response response(Request request, int code, MediaType type, String body) {
+        return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message(code == 200 ? "OK" : "Not Found")
+            .body(ResponseBody.create(type, body))
+            .build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.interfaces.audioplayer.request.PlaybackNearlyFinishedRequest;
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.olegshan.gplayalexa.perf.StubGoogleMusic;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.olegshan.gplayalexa.perf.AlexaRequests.audioPlayer;
+import static com.olegshan.gplayalexa.perf.AlexaRequests.intent;
+import static com.olegshan.gplayalexa.speechlet.SpeechletConstants.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpeechletBenchmark {
+    private static final String CURRENT_TOKEN = QueueToken.album(StubGoogleMusic.ALBUM_ID, 5, StubGoogleMusic.trackId(5)).encode();
+
+    private GoogleMusicSpeechlet speechlet;
+
+    private SpeechletRequestEnvelope<IntentRequest>                 singleSong;
+    private SpeechletRequestEnvelope<IntentRequest>                 album;
+    private SpeechletRequestEnvelope<IntentRequest>                 next;
+    private SpeechletRequestEnvelope<IntentRequest>                 previous;
+    private SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest> nearlyFinished;
+
+    @Setup
+    public void setUp() throws IOException {
+        GPlayMusic api = StubGoogleMusic.create();
+        speechlet = new GoogleMusicSpeechlet(() -> api);
+
+        singleSong = envelope(intent(SINGLE_SONG, SONG_SLOT, "benchmark song", null));
+        album = envelope(intent(ALBUM, ALBUM_SLOT, "benchmark album", null));
+        next = envelope(intent("AMAZON.NextIntent", null, null, CURRENT_TOKEN));
+        previous = envelope(intent("AMAZON.PreviousIntent", null, null, CURRENT_TOKEN));
+        nearlyFinished = envelope(audioPlayer("AudioPlayer.PlaybackNearlyFinished", CURRENT_TOKEN));
+    }
+
+    @TearDown
+    public void tearDown() {
+        speechlet.shutdown();
+    }
+
+    @Benchmark
+    public SpeechletResponse singleSong() {
+        return speechlet.onIntent(singleSong);
+    }
+
+    @Benchmark
+    public SpeechletResponse album() {
+        return speechlet.onIntent(album);
+    }
+
+    @Benchmark
+    public SpeechletResponse next() {
+        return speechlet.onIntent(next);
+    }
+
+    @Benchmark
+    public SpeechletResponse previous() {
+        return speechlet.onIntent(previous);
+    }
+
+    @Benchmark
+    public SpeechletResponse playbackNearlyFinished() {
+        return speechlet.onPlaybackNearlyFinished(nearlyFinished);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends SpeechletRequest> SpeechletRequestEnvelope<T> envelope(String json) throws IOException {
+        return (SpeechletRequestEnvelope<T>) SpeechletRequestEnvelope.fromJson(json);
+    }
+}
@@ -0,0 +1,64 @@
+package com.olegshan.gplayalexa.api;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class DeadlineTest {
+    private static final long NOW = 1_561_234_567_000L;
+
+    @Test
+    public void budgetIsCountedFromRequestTimestamp() {
+        long remaining = Deadline.forRequest(new Date(NOW - 3000), NOW).remainingMillis();
+
+        assertTrue(remaining > 3900 && remaining <= 4000);
+    }
+
+    @Test
+    public void almostExpiredRequestGetsMinimalBudget() {
+        long remaining = Deadline.forRequest(new Date(NOW - 7900), NOW).remainingMillis();
+
+        assertTrue(remaining > Deadline.MIN_BUDGET_MILLIS - 100 && remaining <= Deadline.MIN_BUDGET_MILLIS);
+    }
+
+    @Test
+    public void skewedTimestampIsIgnored() {
+        long fullBudget = Deadline.ALEXA_TIMEOUT_MILLIS - Deadline.RESPONSE_MARGIN_MILLIS;
+
+        assertTrue(Deadline.forRequest(new Date(NOW + 5000), NOW).remainingMillis() > fullBudget - 100);
+        assertTrue(Deadline.forRequest(new Date(NOW - 60_000), NOW).remainingMillis() > fullBudget - 100);
+        assertTrue(Deadline.forRequest(null, NOW).remainingMillis() > fullBudget - 100);
+    }
+
+    @Test
+    public void scopeRestoresPreviousDeadline() {
+        Deadline outer = Deadline.after(1000);
+        Deadline inner = Deadline.after(100);
+
+        try (Deadline.Scope ignored = outer.enter()) {
+            try (Deadline.Scope alsoIgnored = inner.enter()) {
+                assertSame(inner, Deadline.current());
+            }
+            assertSame(outer, Deadline.current());
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void deadlineIsPropagatedToAnotherThread() throws Exception {
+        Deadline deadline = Deadline.after(1000);
+        Deadline[] propagated = new Deadline[1];
+
+        Runnable task;
+        try (Deadline.Scope ignored = deadline.enter()) {
+            task = Deadline.propagate(() -> propagated[0] = Deadline.current());
+        }
+        Thread thread = new Thread(task);
+        thread.start();
+        thread.join();
+
+        assertSame(deadline, propagated[0]);
+    }
+}
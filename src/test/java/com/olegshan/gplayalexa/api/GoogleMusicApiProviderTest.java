@@ -0,0 +1,93 @@
+package com.olegshan.gplayalexa.api;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import svarzee.gps.gpsoauth.AuthToken;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.olegshan.gplayalexa.api.GoogleMusicApiProvider.RETRY_DELAY_MILLIS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GoogleMusicApiProviderTest {
+
+    @Mock
+    private GPlayMusic apiMock;
+    @Mock
+    private HttpTransport transportMock;
+    @Mock
+    private ScheduledExecutorService schedulerMock;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private TokenStore tokenStore;
+
+    @Before
+    public void setUp() throws Exception {
+        tokenStore = new TokenStore(Files.createTempDirectory("token-store").resolve("token.bin"), "password", "salt");
+    }
+
+    @Test
+    public void failedRefreshKeepsServingCurrentTokenAndBacksOff() {
+        GoogleMusicApiProvider provider = provider(1, MINUTES.toMillis(55));
+        assertSame(apiMock, provider.get());
+
+        provider.refresh();
+        provider.refresh();
+
+        assertSame(apiMock, provider.get());
+        assertEquals(3, fetches.get());
+        assertEquals(2, provider.failures());
+        verify(schedulerMock).schedule(any(Runnable.class), eq(RETRY_DELAY_MILLIS), eq(MILLISECONDS));
+        verify(schedulerMock).schedule(any(Runnable.class), eq(2 * RETRY_DELAY_MILLIS), eq(MILLISECONDS));
+    }
+
+    @Test
+    public void expiredTokenIsServedWhileRefreshingInBackground() {
+        GoogleMusicApiProvider provider = provider(1, 0);
+        provider.get();
+
+        assertSame(apiMock, provider.get());
+        assertSame(apiMock, provider.get());
+
+        assertEquals(1, fetches.get());
+        verify(schedulerMock, times(2)).schedule(any(Runnable.class), eq(0L), eq(MILLISECONDS));
+    }
+
+    @Test
+    public void failedLoginIsNotRetriedBeforeBackoff() {
+        GoogleMusicApiProvider provider = provider(0, MINUTES.toMillis(55));
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                provider.get();
+                fail("Expected login to fail");
+            } catch (IllegalStateException expected) {
+            }
+        }
+
+        assertEquals(1, fetches.get());
+        assertEquals(1, provider.failures());
+    }
+
+    private GoogleMusicApiProvider provider(int successfulFetches, long tokenTtlMillis) {
+        return new GoogleMusicApiProvider(tokenStore, () -> {
+            if (fetches.incrementAndGet() > successfulFetches)
+                throw new IOException("Google is down");
+            return new AuthToken("token" + fetches.get());
+        }, token -> apiMock, transportMock, tokenTtlMillis, schedulerMock);
+    }
+}
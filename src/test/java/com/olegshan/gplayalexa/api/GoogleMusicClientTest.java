@@ -0,0 +1,133 @@
+package com.olegshan.gplayalexa.api;
+
+import com.github.felixgail.gplaymusic.api.GPlayMusic;
+import com.github.felixgail.gplaymusic.api.TrackApi;
+import com.github.felixgail.gplaymusic.exceptions.NetworkException;
+import com.github.felixgail.gplaymusic.model.Track;
+import com.olegshan.gplayalexa.metrics.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GoogleMusicClientTest {
+    private static final String TRACK_ID = "trackId";
+
+    @Mock
+    private GPlayMusic googleApiMock;
+    @Mock
+    private TrackApi   trackApiMock;
+    @Mock
+    private Track      trackMock;
+    @Mock
+    private Track      slowTrackMock;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch  release  = new CountDownLatch(1);
+
+    private GoogleMusicClient client;
+
+    @Before
+    public void setUp() {
+        client = new GoogleMusicClient(() -> googleApiMock, Metrics.metrics(), executor);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void callWithoutDeadlineRunsOnCallerThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        when(googleApiMock.getTrackApi()).thenReturn(trackApiMock);
+        when(trackApiMock.getTrack(TRACK_ID)).thenAnswer(invocation -> {
+            assertSame(caller, Thread.currentThread());
+            return trackMock;
+        });
+
+        assertSame(trackMock, client.getTrack(TRACK_ID));
+    }
+
+    @Test
+    public void slowCallIsHedged() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(googleApiMock.getTrackApi()).thenReturn(trackApiMock);
+        when(trackApiMock.getTrack(TRACK_ID)).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() != RecentLatency.MIN_SAMPLES + 1)
+                return trackMock;
+            release.await();
+            return slowTrackMock;
+        });
+        for (int i = 0; i < RecentLatency.MIN_SAMPLES; i++)
+            client.getTrack(TRACK_ID);
+
+        Track track;
+        try (Deadline.Scope ignored = Deadline.after(2000).enter()) {
+            track = client.getTrack(TRACK_ID);
+        }
+
+        assertSame(trackMock, track);
+        assertEquals(1, client.hedges());
+        assertEquals(1, client.hedgeWins());
+    }
+
+    @Test
+    public void callOutlivingDeadlineFails() throws Exception {
+        when(googleApiMock.getTrackApi()).thenReturn(trackApiMock);
+        when(trackApiMock.getTrack(TRACK_ID)).thenAnswer(invocation -> {
+            release.await();
+            return trackMock;
+        });
+
+        long start = System.nanoTime();
+        try (Deadline.Scope ignored = Deadline.after(100).enter()) {
+            client.getTrack(TRACK_ID);
+            fail("Call must not outlive its deadline");
+        } catch (DeadlineExceededException e) {
+            assertTrue(System.nanoTime() - start < 1_000_000_000L);
+            assertEquals(0, client.hedges());
+            assertEquals(1, client.deadlinesExceeded());
+        }
+    }
+
+    @Test
+    public void expiredDeadlineFailsWithoutCallingGoogleMusic() throws Exception {
+        try (Deadline.Scope ignored = Deadline.after(0).enter()) {
+            client.getTrack(TRACK_ID);
+            fail("Call must not start after its deadline");
+        } catch (DeadlineExceededException e) {
+            verifyZeroInteractions(googleApiMock);
+        }
+    }
+
+    @Test
+    public void tooManyRequestsSlowsDownLaterCalls() throws Exception {
+        RateLimiter limiter = new RateLimiter(100, 10, Metrics.metrics());
+        client = new GoogleMusicClient(() -> googleApiMock, Metrics.metrics(), executor, limiter);
+        NetworkException tooManyRequests = mock(NetworkException.class);
+        when(tooManyRequests.getCode()).thenReturn(429);
+        when(googleApiMock.getTrackApi()).thenReturn(trackApiMock);
+        when(trackApiMock.getTrack(TRACK_ID)).thenThrow(tooManyRequests);
+
+        try {
+            client.getTrack(TRACK_ID);
+            fail("Throttled call must fail");
+        } catch (RateLimitedException e) {
+            assertSame(tooManyRequests, e.getCause());
+            assertEquals(50, limiter.rate(), 0.001);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.olegshan.gplayalexa.api;
+
+import com.olegshan.gplayalexa.metrics.Metrics;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpTransportTest {
+    private final HttpTransport transport   = new HttpTransport(2, 60, Metrics.metrics());
+    private final AtomicInteger intercepted = new AtomicInteger();
+
+    private HttpServer server;
+    private String     url;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/sj/v2.5/config";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void clientsBuiltForEveryLoginShareOneConnection() throws IOException {
+        call(transport.newClientBuilder().build());
+        call(transport.newClientBuilder().build());
+
+        assertEquals(2, transport.calls());
+        assertEquals(1, transport.newConnections());
+        assertEquals(1, transport.reusedConnections());
+    }
+
+    @Test
+    public void interceptorsOfOneLoginDoNotLeakIntoTheNext() throws IOException {
+        call(transport.newClientBuilder().addInterceptor(chain -> {
+            intercepted.incrementAndGet();
+            return chain.proceed(chain.request());
+        }).build());
+        call(transport.newClientBuilder().build());
+
+        assertEquals(1, intercepted.get());
+        assertEquals(2, transport.calls());
+    }
+
+    private void call(OkHttpClient client) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            assertEquals(204, response.code());
+        }
+    }
+}
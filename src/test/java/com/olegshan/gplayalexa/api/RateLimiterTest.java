@@ -0,0 +1,107 @@
+package com.olegshan.gplayalexa.api;
+
+import com.olegshan.gplayalexa.metrics.Metrics;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.olegshan.gplayalexa.api.RateLimiter.Priority.*;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+    private static final String OPERATION = "GPlayMusic.getTrack";
+
+    @Test
+    public void burstIsGrantedWithoutWaiting() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 3, Metrics.metrics());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++)
+            limiter.acquire(OPERATION, INTERACTIVE, Deadline.after(1000));
+
+        assertTrue(System.nanoTime() - start < MILLISECONDS.toNanos(100));
+        assertEquals(3, limiter.acquired());
+    }
+
+    @Test
+    public void callThatCantGetAPermitBeforeItsDeadlineIsRejectedRightAway() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 1, Metrics.metrics());
+        limiter.acquire(OPERATION, INTERACTIVE, null);
+
+        long start = System.nanoTime();
+        try {
+            limiter.acquire(OPERATION, INTERACTIVE, Deadline.after(200));
+            fail("Permit can't be granted before the deadline");
+        } catch (RateLimitedException e) {
+            assertTrue(System.nanoTime() - start < MILLISECONDS.toNanos(100));
+            assertEquals(1, limiter.rejected());
+        }
+    }
+
+    @Test
+    public void playbackIsServedBeforeWaitingBackgroundCalls() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, 1, Metrics.metrics());
+        limiter.acquire(OPERATION, BACKGROUND, null);
+        List<RateLimiter.Priority> granted = new CopyOnWriteArrayList<>();
+
+        Thread background = acquireInBackground(limiter, BACKGROUND, granted);
+        MILLISECONDS.sleep(20);
+        Thread playback = acquireInBackground(limiter, PLAYBACK, granted);
+        background.join(2000);
+        playback.join(2000);
+
+        assertEquals(2, granted.size());
+        assertEquals(PLAYBACK, granted.get(0));
+        assertEquals(BACKGROUND, granted.get(1));
+    }
+
+    @Test
+    public void throttlingHalvesTheRateAndSuccessRestoresIt() {
+        RateLimiter limiter = new RateLimiter(40, 10, Metrics.metrics());
+
+        limiter.onThrottled();
+        limiter.onThrottled();
+        assertEquals(10, limiter.rate(), 0.001);
+
+        for (int i = 0; i < 100; i++)
+            limiter.onSuccess();
+        assertEquals(40, limiter.rate(), 0.001);
+    }
+
+    @Test
+    public void throttlingPausesCalls() throws Exception {
+        RateLimiter limiter = new RateLimiter(1000, 100, Metrics.metrics());
+        limiter.onThrottled();
+
+        long start = System.nanoTime();
+        limiter.acquire(OPERATION, PLAYBACK, Deadline.after(1000));
+
+        assertTrue(System.nanoTime() - start >= MILLISECONDS.toNanos(RateLimiter.MIN_BACKOFF_MILLIS / 2));
+    }
+
+    @Test
+    public void disabledLimiterNeverWaits() throws Exception {
+        RateLimiter limiter = new RateLimiter(0, 0, Metrics.metrics());
+
+        for (int i = 0; i < 1000; i++)
+            limiter.acquire(OPERATION, BACKGROUND, Deadline.after(0));
+
+        assertFalse(limiter.isEnabled());
+    }
+
+    private static Thread acquireInBackground(RateLimiter limiter, RateLimiter.Priority priority,
+                                              List<RateLimiter.Priority> granted) {
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire(OPERATION, priority, null);
+                granted.add(priority);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,106 @@
+package com.olegshan.gplayalexa.api;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    private static final String KEY = "GPlayMusic.getAlbum|albumId";
+
+    private final SingleFlight    flights  = new SingleFlight();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch  release  = new CountDownLatch(1);
+    private final AtomicInteger   calls    = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneCall() throws Exception {
+        Future<String> leader = executor.submit(() -> flights.run(KEY, this::slowAlbum));
+        Future<String> follower = whenLeaderStarted(() -> flights.run(KEY, this::slowAlbum));
+
+        release.countDown();
+
+        assertEquals("album 1", leader.get(1, TimeUnit.SECONDS));
+        assertEquals("album 1", follower.get(1, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, flights.shared());
+    }
+
+    @Test
+    public void completedCallIsNotReused() throws Exception {
+        release.countDown();
+
+        flights.run(KEY, this::slowAlbum);
+        flights.run(KEY, this::slowAlbum);
+
+        assertEquals(2, calls.get());
+        assertEquals(0, flights.shared());
+    }
+
+    @Test
+    public void failureIsSharedWithFollowers() throws Exception {
+        Future<String> leader = executor.submit(() -> flights.run(KEY, () -> {
+            slowAlbum();
+            throw new IOException("Rate limit exceeded");
+        }));
+        Future<String> follower = whenLeaderStarted(() -> flights.run(KEY, this::slowAlbum));
+
+        release.countDown();
+
+        assertFailsWith(leader, "Rate limit exceeded");
+        assertFailsWith(follower, "Rate limit exceeded");
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void followerWithTimeLeftCallsItselfWhenLeaderRunsOutOfTime() throws Exception {
+        Future<String> leader = executor.submit(() -> flights.run(KEY, () -> {
+            slowAlbum();
+            throw new DeadlineExceededException(KEY);
+        }));
+        Future<String> follower = whenLeaderStarted(() -> flights.run(KEY, () -> "album " + calls.incrementAndGet()));
+
+        release.countDown();
+
+        assertFailsWith(leader, KEY + " didn't complete before the request deadline");
+        assertEquals("album 2", follower.get(1, TimeUnit.SECONDS));
+    }
+
+    private Future<String> whenLeaderStarted(Callable<String> follower) throws Exception {
+        while (calls.get() == 0)
+            Thread.sleep(1);
+        Future<String> future = executor.submit(follower);
+        while (flights.shared() == 0)
+            Thread.sleep(1);
+        return future;
+    }
+
+    private String slowAlbum() throws IOException {
+        int call = calls.incrementAndGet();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        return "album " + call;
+    }
+
+    private static void assertFailsWith(Future<String> future, String message) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected " + message);
+        } catch (ExecutionException e) {
+            assertEquals(message, e.getCause().getMessage());
+        }
+    }
+}
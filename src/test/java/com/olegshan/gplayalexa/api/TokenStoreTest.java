@@ -0,0 +1,58 @@
+package com.olegshan.gplayalexa.api;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class TokenStoreTest {
+    private static final String TOKEN = "auth_token";
+    private static final String SALT  = "gplay-alexa:user:imei";
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempDirectory("token-store").resolve("token.bin");
+    }
+
+    @Test
+    public void storedTokenIsLoaded() {
+        new TokenStore(file, "password", SALT).save(TOKEN, 2000L);
+
+        TokenStore.StoredToken stored = new TokenStore(file, "password", SALT).load(1000L);
+
+        assertNotNull(stored);
+        assertEquals(TOKEN, stored.token);
+        assertEquals(2000L, stored.expiresAt);
+    }
+
+    @Test
+    public void tokenIsNotStoredInPlainText() throws Exception {
+        new TokenStore(file, "password", SALT).save(TOKEN, 2000L);
+
+        assertFalse(new String(Files.readAllBytes(file), "ISO-8859-1").contains(TOKEN));
+    }
+
+    @Test
+    public void tokenCannotBeLoadedWithAnotherSecret() {
+        new TokenStore(file, "password", SALT).save(TOKEN, 2000L);
+
+        assertNull(new TokenStore(file, "another_password", SALT).load(1000L));
+    }
+
+    @Test
+    public void expiredTokenIsNotLoaded() {
+        new TokenStore(file, "password", SALT).save(TOKEN, 2000L);
+
+        assertNull(new TokenStore(file, "password", SALT).load(2000L));
+    }
+
+    @Test
+    public void missingTokenIsNotLoaded() {
+        assertNull(new TokenStore(file, "password", SALT).load(1000L));
+    }
+}
@@ -0,0 +1,119 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GoogleMusicRequestStreamHandlerTest {
+    private static final String APPLICATION_ID = "applicationId";
+
+    @Mock
+    private GoogleMusicSpeechlet speechletMock;
+
+    private GoogleMusicRequestStreamHandler handler;
+
+    @Before
+    public void setUp() {
+        handler = new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID));
+    }
+
+    @Test
+    public void playbackStartedIsAcknowledgedWithoutSpeechlet() throws Exception {
+        assertTrue(handle(audioPlayerRequest("AudioPlayer.PlaybackStarted", APPLICATION_ID)).startsWith("{\"version\":\"1.0\""));
+        assertTrue(handle(audioPlayerRequest("AudioPlayer.PlaybackFinished", APPLICATION_ID)).startsWith("{\"version\":\"1.0\""));
+
+        verifyZeroInteractions(speechletMock);
+    }
+
+    @Test
+    public void fastPathResponseMatchesSpeechletResponse() throws Exception {
+        String fast = handle(audioPlayerRequest("AudioPlayer.PlaybackFinished", APPLICATION_ID));
+
+        String dispatched = handle(audioPlayerRequest("AudioPlayer.PlaybackFailed", APPLICATION_ID));
+
+        verify(speechletMock).onPlaybackFailed(any());
+        assertEquals(dispatched, fast);
+    }
+
+    @Test
+    public void playbackStoppedIsDispatchedToSpeechlet() throws Exception {
+        handle(audioPlayerRequest("AudioPlayer.PlaybackStopped", APPLICATION_ID));
+
+        verify(speechletMock).onPlaybackStopped(any());
+    }
+
+    @Test
+    public void intentIsDispatchedToSpeechlet() throws Exception {
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText("Hello");
+        SpeechletResponse response = new SpeechletResponse();
+        response.setOutputSpeech(speech);
+        when(speechletMock.onIntent(any())).thenReturn(response);
+
+        String output = handle(intentRequest());
+
+        verify(speechletMock).onIntent(any());
+        assertTrue(output.contains("Hello"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unsupportedApplicationIsRejected() throws Exception {
+        handle(audioPlayerRequest("AudioPlayer.PlaybackStarted", "anotherApplicationId"));
+    }
+
+    @Test
+    public void requestTypeAndApplicationAreFoundInAnyFieldOrder() {
+        RequestPeek peek = RequestPeek.of(bytes("{\"request\":{\"token\":\"t\",\"type\":\"AudioPlayer.PlaybackFinished\"},"
+            + "\"version\":\"1.0\",\"context\":{\"AudioPlayer\":{\"token\":\"t\"},"
+            + "\"System\":{\"device\":{\"deviceId\":\"d\"},\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"}}}}"));
+
+        assertEquals("AudioPlayer.PlaybackFinished", peek.type());
+        assertEquals(APPLICATION_ID, peek.applicationId());
+        assertTrue(peek.isNoOp());
+        assertFalse(RequestPeek.of(bytes("not json")).isNoOp());
+    }
+
+    private String handle(String request) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(bytes(request)), output, null);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String audioPlayerRequest(String type, String applicationId) {
+        String error = type.endsWith("Failed") ? ",\"error\":{\"type\":\"MEDIA_ERROR_UNKNOWN\",\"message\":\"error\"}" : "";
+        return "{\"version\":\"1.0\","
+            + "\"context\":{\"System\":{\"application\":{\"applicationId\":\"" + applicationId + "\"},"
+            + "\"user\":{\"userId\":\"userId\"},\"device\":{\"deviceId\":\"deviceId\"}}},"
+            + "\"request\":{\"type\":\"" + type + "\",\"requestId\":\"requestId\","
+            + "\"timestamp\":\"2019-07-01T10:00:00Z\",\"locale\":\"en-US\",\"token\":\"token\",\"offsetInMilliseconds\":0"
+            + error + "}}";
+    }
+
+    private static String intentRequest() {
+        return "{\"version\":\"1.0\","
+            + "\"session\":{\"new\":true,\"sessionId\":\"sessionId\","
+            + "\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},\"user\":{\"userId\":\"userId\"}},"
+            + "\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"requestId\","
+            + "\"timestamp\":\"2019-07-01T10:00:00Z\",\"locale\":\"en-US\","
+            + "\"intent\":{\"name\":\"AMAZON.HelpIntent\",\"slots\":{}}}}";
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,38 @@
+package com.olegshan.gplayalexa.handler;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestPeekTest {
+
+    @Test
+    public void knownRequestTypeIsItsOwnMetricType() {
+        RequestPeek peek = RequestPeek.of(request("AudioPlayer.PlaybackNearlyFinished"));
+
+        assertEquals("AudioPlayer.PlaybackNearlyFinished", peek.type());
+        assertEquals("AudioPlayer.PlaybackNearlyFinished", peek.metricType());
+    }
+
+    @Test
+    public void unknownRequestTypeIsReportedAsOther() {
+        RequestPeek peek = RequestPeek.of(request("Made.Up.Type-42"));
+
+        assertEquals("Made.Up.Type-42", peek.type());
+        assertEquals("Other", peek.metricType());
+    }
+
+    @Test
+    public void unparseableRequestIsReportedAsOther() {
+        RequestPeek peek = RequestPeek.of("not json".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("Other", peek.metricType());
+    }
+
+    private static byte[] request(String type) {
+        return ("{\"version\":\"1.0\",\"request\":{\"type\":\"" + type + "\",\"requestId\":\"requestId\"}}")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+}
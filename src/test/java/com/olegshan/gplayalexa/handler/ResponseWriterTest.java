@@ -0,0 +1,134 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.interfaces.audioplayer.AudioItem;
+import com.amazon.speech.speechlet.interfaces.audioplayer.PlayBehavior;
+import com.amazon.speech.speechlet.interfaces.audioplayer.Stream;
+import com.amazon.speech.speechlet.interfaces.audioplayer.directive.PlayDirective;
+import com.amazon.speech.speechlet.util.UserAgentUtils;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.SimpleCard;
+import com.olegshan.gplayalexa.metrics.Metrics;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ResponseWriterTest {
+    private final ResponseWriter writer = new ResponseWriter(GoogleMusicSpeechlet.constantResponses(), Metrics.metrics());
+
+    @Test
+    public void constantResponsesAreWrittenFromCache() throws Exception {
+        for (SpeechletResponse response : GoogleMusicSpeechlet.constantResponses())
+            assertWrittenAsSerialized(envelope(response));
+
+        assertEquals(GoogleMusicSpeechlet.constantResponses().size(), writer.constantResponses());
+        assertEquals(0, writer.serializedResponses());
+    }
+
+    @Test
+    public void playResponsesFromTemplateMatchSerializedOnes() throws Exception {
+        assertWrittenAsSerialized(envelope(play("Playing The Unforgiven by Metallica", "https://stream/1?a=1&b=2",
+            "album|albumId|0|trackId", null, PlayBehavior.REPLACE_ALL)));
+        assertWrittenAsSerialized(envelope(play("Playing \"\u00DCnforgiven\" \\ by\n Metallica\u0001", "https://stream/2",
+            "album|albumId|1|trackId", null, PlayBehavior.REPLACE_ALL)));
+        assertWrittenAsSerialized(envelope(play(null, "https://stream/3", "album|albumId|2|trackId",
+            "album|albumId|1|trackId", PlayBehavior.ENQUEUE)));
+
+        assertEquals(3, writer.templatedResponses());
+        assertEquals(0, writer.serializedResponses());
+    }
+
+    @Test
+    public void emptySessionAttributesAreKept() throws Exception {
+        SpeechletResponseEnvelope constant = envelope(GoogleMusicSpeechlet.constantResponses().get(0));
+        constant.setSessionAttributes(Collections.emptyMap());
+        SpeechletResponseEnvelope played = envelope(play("Playing", "https://stream/1", "token", null,
+            PlayBehavior.REPLACE_ALL));
+        played.setSessionAttributes(Collections.emptyMap());
+
+        assertWrittenAsSerialized(constant);
+        assertWrittenAsSerialized(played);
+        assertEquals(1, writer.constantResponses());
+        assertEquals(1, writer.templatedResponses());
+    }
+
+    @Test
+    public void unknownShapesAreSerialized() throws Exception {
+        SpeechletResponse response = play("Playing", "https://stream/1", "token", null, PlayBehavior.REPLACE_ALL);
+        SimpleCard card = new SimpleCard();
+        card.setTitle("Card");
+        response.setCard(card);
+
+        assertWrittenAsSerialized(envelope(response));
+        assertWrittenAsSerialized(envelope(null));
+        assertEquals(2, writer.serializedResponses());
+    }
+
+    @Test
+    public void oversizedResponsesAreRejectedBeforeWriting() throws Exception {
+        char[] text = new char[ResponseWriter.MAX_RESPONSE_BYTES];
+        Arrays.fill(text, 'a');
+        SpeechletResponse templated = play(new String(text), "https://stream/1", "token", null,
+            PlayBehavior.REPLACE_ALL);
+        SpeechletResponse serialized = play(new String(text), "https://stream/1", "token", null,
+            PlayBehavior.REPLACE_ALL);
+        serialized.setCard(new SimpleCard());
+
+        for (SpeechletResponse response : Arrays.asList(templated, serialized)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                writer.write(envelope(response), output);
+                fail("Expected an oversized response to be rejected");
+            } catch (SpeechletRequestHandlerException expected) {
+            }
+            assertEquals(0, output.size());
+        }
+    }
+
+    private void assertWrittenAsSerialized(SpeechletResponseEnvelope envelope) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(envelope, output);
+        assertEquals(new String(envelope.toJsonBytes(), UTF_8), new String(output.toByteArray(), UTF_8));
+    }
+
+    private static SpeechletResponseEnvelope envelope(SpeechletResponse response) {
+        SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+        envelope.setVersion("1.0");
+        envelope.setUserAgent(UserAgentUtils.getUserAgent());
+        envelope.setResponse(response);
+        return envelope;
+    }
+
+    private static SpeechletResponse play(String text, String url, String token, String previousToken,
+                                          PlayBehavior playBehavior) {
+        Stream stream = new Stream();
+        stream.setUrl(url);
+        stream.setToken(token);
+        stream.setExpectedPreviousToken(previousToken);
+        AudioItem audioItem = new AudioItem();
+        audioItem.setStream(stream);
+        PlayDirective directive = new PlayDirective();
+        directive.setAudioItem(audioItem);
+        directive.setPlayBehavior(playBehavior);
+
+        SpeechletResponse response = new SpeechletResponse();
+        response.setDirectives(singletonList(directive));
+        if (text != null) {
+            PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+            speech.setText(text);
+            response.setOutputSpeech(speech);
+            response.setNullableShouldEndSession(true);
+        }
+        return response;
+    }
+}
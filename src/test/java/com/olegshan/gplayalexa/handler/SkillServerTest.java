@@ -0,0 +1,197 @@
+package com.olegshan.gplayalexa.handler;
+
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestVerifierWrapper;
+import com.amazon.speech.speechlet.verifier.TimestampSpeechletRequestVerifier;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.olegshan.gplayalexa.metrics.Metrics;
+import com.olegshan.gplayalexa.speechlet.GoogleMusicSpeechlet;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SkillServerTest {
+    private static final String APPLICATION_ID = "applicationId";
+
+    @Mock
+    private GoogleMusicSpeechlet speechletMock;
+
+    private SkillServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null)
+            server.stop();
+    }
+
+    @Test
+    public void unsignedRequestIsRejected() throws Exception {
+        start(true, new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID)));
+
+        HttpURLConnection connection = post(intentRequest(Instant.now()));
+
+        assertEquals(400, connection.getResponseCode());
+        verifyZeroInteractions(speechletMock);
+    }
+
+    @Test
+    public void intentIsDispatchedToSharedSpeechlet() throws Exception {
+        PlainTextOutputSpeech speech = new PlainTextOutputSpeech();
+        speech.setText("Hello");
+        SpeechletResponse response = new SpeechletResponse();
+        response.setOutputSpeech(speech);
+        when(speechletMock.onIntent(any())).thenReturn(response);
+        start(false, new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID)));
+
+        HttpURLConnection first = post(intentRequest(Instant.now()));
+        HttpURLConnection second = post(intentRequest(Instant.now()));
+
+        assertEquals(200, first.getResponseCode());
+        assertTrue(body(first).contains("Hello"));
+        assertEquals(200, second.getResponseCode());
+        assertTrue(body(second).contains("Hello"));
+        verify(speechletMock, times(2)).onIntent(any());
+    }
+
+    @Test
+    public void staleRequestIsRejected() throws Exception {
+        start(false, new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID),
+            new SpeechletRequestVerifierWrapper(
+                new TimestampSpeechletRequestVerifier(SkillServer.TIMESTAMP_TOLERANCE_SECONDS, SECONDS))));
+
+        HttpURLConnection connection = post(intentRequest(Instant.now().minusSeconds(600)));
+
+        assertEquals(400, connection.getResponseCode());
+        verifyZeroInteractions(speechletMock);
+    }
+
+    @Test
+    public void malformedRequestIsRejected() throws Exception {
+        start(false, new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID)));
+
+        HttpURLConnection connection = post("{\"version\":");
+
+        assertEquals(400, connection.getResponseCode());
+        verifyZeroInteractions(speechletMock);
+    }
+
+    @Test
+    public void speechletFailureIsServerError() throws Exception {
+        when(speechletMock.onIntent(any())).thenThrow(new IllegalStateException("Google Music is down"));
+        start(false, new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID)));
+
+        HttpURLConnection connection = post(intentRequest(Instant.now()));
+
+        assertEquals(500, connection.getResponseCode());
+    }
+
+    @Test
+    public void oversizedRequestIsRejectedBeforeVerification() throws Exception {
+        start(true, new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID)));
+
+        char[] padding = new char[SkillServer.MAX_REQUEST_BYTES];
+        Arrays.fill(padding, ' ');
+        HttpURLConnection connection = post(intentRequest(Instant.now()) + new String(padding));
+
+        assertEquals(413, connection.getResponseCode());
+        verifyZeroInteractions(speechletMock);
+    }
+
+    @Test
+    public void saturatedServerAnswersServiceUnavailable() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(speechletMock.onIntent(any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return null;
+        });
+        server = new SkillServer(HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0), 1, 1,
+            new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID)), false,
+            Metrics.metrics());
+        server.start();
+        ExecutorService clients = Executors.newCachedThreadPool();
+        try {
+            clients.submit(() -> post(intentRequest(Instant.now())).getResponseCode());
+            assertTrue(entered.await(5, SECONDS));
+            clients.submit(() -> post(intentRequest(Instant.now())).getResponseCode());
+            Thread.sleep(200);
+
+            assertEquals(503, post(intentRequest(Instant.now())).getResponseCode());
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void pingAnswersWithoutSpeechlet() throws Exception {
+        start(true, new GoogleMusicRequestStreamHandler(speechletMock, Collections.singleton(APPLICATION_ID)));
+
+        HttpURLConnection connection = (HttpURLConnection) url(SkillServer.PING_PATH).openConnection();
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("OK", body(connection));
+        verifyZeroInteractions(speechletMock);
+    }
+
+    private void start(boolean verifySignatures, GoogleMusicRequestStreamHandler handler) throws IOException {
+        server = new SkillServer(HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0), 4, handler,
+            verifySignatures, Metrics.metrics());
+        server.start();
+    }
+
+    private HttpURLConnection post(String request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url(SkillServer.SKILL_PATH).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(request.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.address().getPort() + path);
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        try (InputStream input = connection.getInputStream()) {
+            return IOUtils.toString(input, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String intentRequest(Instant timestamp) {
+        return "{\"version\":\"1.0\","
+            + "\"session\":{\"new\":true,\"sessionId\":\"sessionId\","
+            + "\"application\":{\"applicationId\":\"" + APPLICATION_ID + "\"},\"user\":{\"userId\":\"userId\"}},"
+            + "\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"requestId\","
+            + "\"timestamp\":\"" + timestamp.truncatedTo(ChronoUnit.SECONDS) + "\",\"locale\":\"en-US\","
+            + "\"intent\":{\"name\":\"AMAZON.HelpIntent\",\"slots\":{}}}}";
+    }
+}
@@ -0,0 +1,27 @@
+package com.olegshan.gplayalexa.logging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LogSamplerTest {
+
+    @Test
+    public void firstOfEveryRateEventsIsSampled() {
+        LogSampler sampler = new LogSampler(3);
+
+        assertTrue(sampler.sample());
+        assertFalse(sampler.sample());
+        assertFalse(sampler.sample());
+        assertTrue(sampler.sample());
+    }
+
+    @Test
+    public void rateOfOneSamplesEverything() {
+        LogSampler sampler = new LogSampler(0);
+
+        assertEquals(1, sampler.rate());
+        for (int i = 0; i < 10; i++)
+            assertTrue(sampler.sample());
+    }
+}
@@ -0,0 +1,73 @@
+package com.olegshan.gplayalexa.logging;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class LoggingTest {
+
+    @Test
+    public void appendersAreMovedBehindAsyncAppender() {
+        Logger logger = Logger.getLogger("logging-test");
+        logger.setAdditivity(false);
+        RecordingAppender recording = new RecordingAppender();
+        logger.addAppender(recording);
+
+        AsyncAppender async = Logging.makeAsync(logger, 16);
+        logger.info("handled request");
+        async.close();
+
+        assertSame(async, logger.getAllAppenders().nextElement());
+        assertSame(recording, async.getAppender("recording"));
+        assertEquals(1, recording.messages.size());
+        assertEquals("handled request", recording.messages.get(0));
+    }
+
+    @Test
+    public void warningsAreWrittenBeforeLogCallReturns() throws Exception {
+        Logger logger = Logger.getLogger("logging-sync-test");
+        logger.setAdditivity(false);
+        RecordingAppender recording = new RecordingAppender();
+        logger.addAppender(recording);
+        AsyncAppender async = Logging.makeAsync(logger, 16);
+
+        logger.error("request failed");
+        assertEquals(1, recording.messages.size());
+        assertEquals("request failed", recording.messages.get(0));
+
+        logger.info("handled request");
+        async.close();
+        assertEquals(2, recording.messages.size());
+        assertEquals("handled request", recording.messages.get(1));
+    }
+
+    private static class RecordingAppender extends AppenderSkeleton {
+        private final List<Object> messages = new CopyOnWriteArrayList<>();
+
+        RecordingAppender() {
+            setName("recording");
+        }
+
+        @Override
+        protected void append(LoggingEvent event) {
+            messages.add(event.getMessage());
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
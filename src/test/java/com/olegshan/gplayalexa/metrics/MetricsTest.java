@@ -0,0 +1,76 @@
+package com.olegshan.gplayalexa.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    private static final long NOW = 1_561_234_567_000L;
+
+    private Metrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new Metrics(() -> NOW);
+    }
+
+    @Test
+    public void latencyIsEmittedInEmbeddedMetricFormat() {
+        metrics.latency("onIntent", "Intent", "Album").record(MILLISECONDS.toNanos(20));
+        metrics.latency("onIntent", "Intent", "Album").record(MILLISECONDS.toNanos(40));
+
+        List<String> lines = metrics.drain();
+
+        assertEquals(1, lines.size());
+        String line = lines.get(0);
+        assertTrue(line.startsWith("{\"_aws\":{\"Timestamp\":" + NOW));
+        assertTrue(line.contains("\"Dimensions\":[[\"Operation\",\"Intent\"]]"));
+        assertTrue(line.contains("\"Operation\":\"onIntent\",\"Intent\":\"Album\""));
+        assertTrue(line.contains("\"Count\":2"));
+    }
+
+    @Test
+    public void emptyIntervalsAreNotEmitted() {
+        metrics.latency("onPlaybackNearlyFinished").record(MILLISECONDS.toNanos(5));
+        metrics.drain();
+
+        assertTrue(metrics.drain().isEmpty());
+    }
+
+    @Test
+    public void countersAreEmittedAsDeltasWithHitRate() {
+        AtomicLong hits = new AtomicLong(3);
+        AtomicLong misses = new AtomicLong(1);
+        metrics.counter("AlbumCache", "Hits", hits::get);
+        metrics.counter("AlbumCache", "Misses", misses::get);
+
+        String first = metrics.drain().get(0);
+        assertTrue(first.contains("\"Hits\":3"));
+        assertTrue(first.contains("\"HitRate\":75.0"));
+
+        hits.addAndGet(1);
+        String second = metrics.drain().get(0);
+        assertTrue(second.contains("\"Hits\":1"));
+        assertTrue(second.contains("\"Misses\":0"));
+        assertTrue(second.contains("\"HitRate\":100.0"));
+
+        assertTrue(metrics.drain().isEmpty());
+    }
+
+    @Test
+    public void gaugesAreEmittedAsCurrentValues() {
+        AtomicLong depth = new AtomicLong(4);
+        metrics.gauge("GoogleMusicRateLimiter", "QueueDepth", depth::get);
+
+        assertTrue(metrics.drain().get(0).contains("\"QueueDepth\":4"));
+        assertTrue(metrics.drain().get(0).contains("\"QueueDepth\":4"));
+
+        depth.set(0);
+        assertTrue(metrics.drain().isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AlbumCacheTest {
+
+    @Mock
+    private Track firstTrack;
+    @Mock
+    private Track secondTrack;
+
+    private int loads;
+
+    @Test
+    public void repeatedAlbumIsServedFromCache() throws Exception {
+        AlbumCache cache = new AlbumCache(10, null);
+
+        AlbumTracks album = cache.get("first", this::load);
+
+        assertSame(album, cache.get("first", this::load));
+        assertEquals(1, loads);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void leastRecentlyUsedAlbumsAreEvictedByTrackCount() throws Exception {
+        AlbumCache cache = new AlbumCache(4, null);
+
+        cache.get("first", this::load);
+        cache.get("second", this::load);
+        cache.get("first", this::load);
+        cache.get("third", this::load);
+        cache.get("first", this::load);
+        cache.get("second", this::load);
+
+        assertEquals(4, loads);
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    public void albumsSurviveRestart() throws Exception {
+        when(firstTrack.getID()).thenReturn("track1");
+        when(firstTrack.getTitle()).thenReturn("Smack My Bitch Up");
+        when(firstTrack.getArtist()).thenReturn("The Prodigy");
+
+        Path file = Files.createTempFile("albums", ".cache");
+        Files.delete(file);
+
+        AlbumCache cache = new AlbumCache(10, file);
+        cache.get("albumId", albumId -> AlbumTracks.of(albumId, "The Fat of the Land", "The Prodigy",
+            Arrays.asList(firstTrack)));
+        cache.shutdown();
+
+        AlbumTracks restored = new AlbumCache(10, file).get("albumId", this::load);
+
+        assertEquals(0, loads);
+        assertEquals("The Fat of the Land", restored.name());
+        assertEquals(1, restored.size());
+        assertEquals("track1", restored.trackId(0));
+        assertEquals("Smack My Bitch Up", restored.title(0));
+        assertEquals("The Prodigy", restored.artist(0));
+    }
+
+    @Test
+    public void missesAreWrittenOnceAfterDelay() throws Exception {
+        Path file = Files.createTempFile("albums", ".cache");
+        Files.delete(file);
+
+        AlbumCache cache = new AlbumCache(10, file, 50);
+        cache.get("first", this::load);
+        cache.get("second", this::load);
+        cache.get("first", this::load);
+
+        for (int i = 0; i < 100 && cache.writes() == 0; i++)
+            Thread.sleep(10);
+        cache.shutdown();
+
+        assertEquals(1, cache.writes());
+
+        AlbumCache restored = new AlbumCache(10, file);
+        restored.get("first", this::load);
+        restored.get("second", this::load);
+        assertEquals(2, loads);
+    }
+
+    private AlbumTracks load(String albumId) {
+        loads++;
+        return AlbumTracks.of(albumId, albumId, "Artist", Arrays.asList(firstTrack, secondTrack));
+    }
+}
@@ -0,0 +1,94 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AlbumTracksTest {
+    private final AlbumTracks album = AlbumTracks.of("albumId", "Ride the Lightning", "Metallica", Arrays.asList(
+        track("T1", "Fight Fire with Fire", "Metallica"),
+        track("T2", "For Whom the Bell Tolls", "Metallica"),
+        track("T3", "Call of Ktulu", null)
+    ));
+
+    @Test
+    public void tracksAreReadBackFromPackedStorage() {
+        assertEquals(3, album.size());
+        assertEquals("T2", album.trackId(1));
+        assertEquals("For Whom the Bell Tolls", album.title(1));
+        assertEquals("Metallica", album.artist(1));
+        assertSame(album.artist(0), album.artist(1));
+        assertEquals("", album.artist(2));
+    }
+
+    @Test
+    public void trackIsFoundByIdWhenPositionMoved() {
+        assertEquals(1, album.indexOf("T2", 1));
+        assertEquals(2, album.indexOf("T3", 0));
+        assertEquals(2, album.indexOf("T", 5));
+        assertEquals(0, album.indexOf(null, 0));
+    }
+
+    @Test
+    public void appendedTracksFollowExistingOnes() {
+        AlbumTracks more = AlbumTracks.of("other", "Kill 'Em All", "Metallica",
+            Arrays.asList(track("T4", "Seek & Destroy", "Metallica")));
+
+        AlbumTracks appended = album.append(more);
+
+        assertEquals(4, appended.size());
+        assertEquals("albumId", appended.albumId());
+        assertEquals("T1", appended.trackId(0));
+        assertEquals("Seek & Destroy", appended.title(3));
+        assertSame(album, album.append(AlbumTracks.EMPTY));
+    }
+
+    @Test
+    public void serializedTracksAreRestored() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        album.writeTo(new DataOutputStream(bytes));
+
+        AlbumTracks restored = AlbumTracks.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("Ride the Lightning", restored.name());
+        for (int i = 0; i < album.size(); i++) {
+            assertEquals(album.trackId(i), restored.trackId(i));
+            assertEquals(album.title(i), restored.title(i));
+            assertEquals(album.artist(i), restored.artist(i));
+        }
+    }
+
+    @Test
+    public void trackWithoutIdKeepsNullId() throws IOException {
+        AlbumTracks noIds = AlbumTracks.of("albumId", "Demo", "Metallica", Arrays.asList(
+            track(null, "Hit the Lights", "Metallica"),
+            track("", "Jump in the Fire", "Metallica")
+        ));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        noIds.writeTo(new DataOutputStream(bytes));
+
+        AlbumTracks restored = AlbumTracks.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertNull(noIds.trackId(0));
+        assertEquals("", noIds.trackId(1));
+        assertFalse(noIds.hasTrackId(0, ""));
+        assertTrue(noIds.hasTrackId(1, ""));
+        assertNull(restored.trackId(0));
+        assertEquals("", restored.trackId(1));
+        assertNull(noIds.append(AlbumTracks.EMPTY).append(restored).trackId(2));
+    }
+
+    private static Track track(String id, String title, String artist) {
+        Track track = mock(Track.class);
+        when(track.getID()).thenReturn(id);
+        when(track.getTitle()).thenReturn(title);
+        when(track.getArtist()).thenReturn(artist);
+        return track;
+    }
+}
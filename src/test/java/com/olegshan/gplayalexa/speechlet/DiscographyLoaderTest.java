@@ -0,0 +1,136 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Album;
+import com.github.felixgail.gplaymusic.model.Artist;
+import com.github.felixgail.gplaymusic.model.Track;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DiscographyLoaderTest {
+    private final ExecutorService executor      = Executors.newFixedThreadPool(3);
+    private final CountDownLatch  releaseFirst  = new CountDownLatch(1);
+    private final AtomicInteger   artistLookups = new AtomicInteger();
+    private final Artist          artist        = artist("A1", "A2", "A3");
+
+    private final DiscographyLoader loader = new DiscographyLoader(executor, this::loadAlbum);
+
+    @After
+    public void tearDown() {
+        releaseFirst.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void albumsAreAppendedInArtistOrder() throws Exception {
+        DiscographyLoader.Discography discography = loader.load("artistId", this::loadArtist);
+
+        assertEquals(0, discography.awaitMoreThan(0, SECONDS.toNanos(1) / 10).size());
+        assertFalse(discography.isComplete());
+
+        releaseFirst.countDown();
+        AlbumTracks tracks = awaitComplete(discography);
+
+        assertEquals(Arrays.asList("A1-1", "A1-2", "A2-1", "A2-2"), trackIds(tracks));
+        assertEquals("artistId", tracks.albumId());
+        assertEquals("Metallica", tracks.name());
+    }
+
+    @Test
+    public void failedAlbumIsSkipped() throws Exception {
+        releaseFirst.countDown();
+
+        AlbumTracks tracks = awaitComplete(loader.load("artistId", this::loadArtist));
+
+        assertFalse(trackIds(tracks).contains("A3-1"));
+        assertEquals(4, tracks.size());
+    }
+
+    @Test
+    public void discographyWithFailedAlbumIsLoadedAgain() throws Exception {
+        releaseFirst.countDown();
+
+        awaitComplete(loader.load("artistId", this::loadArtist));
+        assertNull(loader.find("artistId"));
+
+        awaitComplete(loader.load("artistId", this::loadArtist));
+        assertEquals(2, artistLookups.get());
+    }
+
+    @Test
+    public void artistIsLoadedOnce() throws Exception {
+        DiscographyLoader.Discography first = loader.load("artistId", this::loadArtist);
+        DiscographyLoader.Discography second = loader.load("artistId", this::loadArtist);
+
+        assertSame(first, second);
+        assertSame(first, loader.find("artistId"));
+        assertNull(loader.find("otherArtistId"));
+        assertEquals(1, artistLookups.get());
+    }
+
+    private AlbumTracks awaitComplete(DiscographyLoader.Discography discography) throws Exception {
+        for (int i = 0; i < 100 && !discography.isComplete(); i++)
+            discography.awaitMoreThan(Integer.MAX_VALUE, SECONDS.toNanos(1) / 10);
+        assertTrue(discography.isComplete());
+        return discography.tracks();
+    }
+
+    private Artist loadArtist(String artistId) {
+        artistLookups.incrementAndGet();
+        return artist;
+    }
+
+    private AlbumTracks loadAlbum(String albumId) throws IOException {
+        if ("A1".equals(albumId)) {
+            try {
+                releaseFirst.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        if ("A3".equals(albumId))
+            throw new IOException("Album " + albumId + " is not available");
+
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            Track track = mock(Track.class);
+            when(track.getID()).thenReturn(albumId + "-" + i);
+            tracks.add(track);
+        }
+        return AlbumTracks.of(albumId, albumId, "Metallica", tracks);
+    }
+
+    private static Artist artist(String... albumIds) {
+        List<Album> albums = new ArrayList<>();
+        for (String albumId : albumIds) {
+            Album album = mock(Album.class);
+            when(album.getAlbumId()).thenReturn(albumId);
+            albums.add(album);
+        }
+        Artist artist = mock(Artist.class);
+        when(artist.getName()).thenReturn("Metallica");
+        when(artist.getAlbums()).thenReturn(Optional.of(albums));
+        return artist;
+    }
+
+    private static List<String> trackIds(AlbumTracks tracks) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < tracks.size(); i++)
+            ids.add(tracks.trackId(i));
+        return ids;
+    }
+}
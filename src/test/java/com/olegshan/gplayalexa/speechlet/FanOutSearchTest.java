@@ -0,0 +1,133 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Album;
+import com.github.felixgail.gplaymusic.model.Track;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FanOutSearchTest {
+    private static final String QUERY = "the fat of the land prodigy";
+
+    @Mock
+    private Track trackMock;
+    @Mock
+    private Album albumMock;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private final CountDownLatch  release  = new CountDownLatch(1);
+
+    private final FanOutSearch search = new FanOutSearch(executor, 200, 1000);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void bestRankedMatchWins() throws Exception {
+        stubTrack("Smack My Bitch Up", "The Prodigy");
+        stubAlbum("The Fat of the Land", "The Prodigy");
+
+        SearchMatch match = search.search(QUERY, Arrays.asList(
+            query -> FanOutSearch.rank(query, singletonList(trackMock), SearchMatch::track),
+            query -> FanOutSearch.rank(query, singletonList(albumMock), SearchMatch::album)
+        ));
+
+        assertEquals(SearchMatch.Type.ALBUM, match.type());
+        assertEquals("albumId", match.id());
+    }
+
+    @Test
+    public void exactMatchDoesNotWaitForSlowSearch() throws Exception {
+        stubAlbum("The Fat of the Land", "The Prodigy");
+
+        long start = System.nanoTime();
+        SearchMatch match = search.search(QUERY, Arrays.asList(
+            query -> FanOutSearch.rank(query, singletonList(albumMock), SearchMatch::album),
+            query -> blockUntilReleased()
+        ));
+
+        assertEquals(SearchMatch.Type.ALBUM, match.type());
+        assertTrue(System.nanoTime() - start < 200_000_000L);
+    }
+
+    @Test
+    public void acceptableMatchIsReturnedWhenBudgetRunsOut() throws Exception {
+        stubTrack("Firestarter", "The Prodigy");
+
+        long start = System.nanoTime();
+        SearchMatch match = search.search("firestarter", Arrays.asList(
+            query -> FanOutSearch.rank(query, singletonList(trackMock), SearchMatch::track),
+            query -> blockUntilReleased()
+        ));
+
+        assertEquals(SearchMatch.Type.TRACK, match.type());
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+    }
+
+    @Test
+    public void failedSearchIsIgnored() throws Exception {
+        stubTrack("Firestarter", "The Prodigy");
+
+        SearchMatch match = search.search("firestarter prodigy", Arrays.asList(
+            query -> {
+                throw new IOException("Rate limit exceeded");
+            },
+            query -> FanOutSearch.rank(query, singletonList(trackMock), SearchMatch::track)
+        ));
+
+        assertEquals("trackId", match.id());
+    }
+
+    @Test
+    public void unrelatedResultsAreNotAcceptable() throws Exception {
+        stubTrack("Breathe", "The Prodigy");
+
+        assertNull(search.search("metallica", singletonList(
+            query -> FanOutSearch.rank(query, singletonList(trackMock), SearchMatch::track)
+        )));
+    }
+
+    @Test
+    public void relevanceFavoursFullQueryCoverage() {
+        assertEquals(1.0, SearchMatch.relevance("the unforgiven metallica", "The Unforgiven", "Metallica", 0), 0.001);
+        assertTrue(SearchMatch.relevance("the unforgiven metallica", "Metallica", null, 0) < SearchMatch.ACCEPTABLE_MATCH + 0.1);
+        assertEquals(0, SearchMatch.relevance("metallica", "Breathe", "The Prodigy", 0), 0.001);
+    }
+
+    private java.util.List<SearchMatch> blockUntilReleased() throws IOException {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new IOException("Released");
+    }
+
+    private void stubTrack(String title, String artist) {
+        when(trackMock.getID()).thenReturn("trackId");
+        when(trackMock.getTitle()).thenReturn(title);
+        when(trackMock.getArtist()).thenReturn(artist);
+    }
+
+    private void stubAlbum(String name, String artist) {
+        when(albumMock.getAlbumId()).thenReturn("albumId");
+        when(albumMock.getName()).thenReturn(name);
+        when(albumMock.getAlbumArtist()).thenReturn(artist);
+    }
+}
@@ -7,26 +7,33 @@ import com.amazon.speech.speechlet.IntentRequest;
 import com.amazon.speech.speechlet.LaunchRequest;
 import com.amazon.speech.speechlet.Session;
 import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.interfaces.audioplayer.PlayBehavior;
 import com.amazon.speech.speechlet.interfaces.audioplayer.directive.PlayDirective;
 import com.amazon.speech.speechlet.interfaces.audioplayer.directive.StopDirective;
+import com.amazon.speech.speechlet.interfaces.audioplayer.request.PlaybackNearlyFinishedRequest;
 import com.amazon.speech.ui.OutputSpeech;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
 import com.github.felixgail.gplaymusic.api.GPlayMusic;
 import com.github.felixgail.gplaymusic.api.TrackApi;
 import com.github.felixgail.gplaymusic.model.Album;
+import com.github.felixgail.gplaymusic.model.Artist;
 import com.github.felixgail.gplaymusic.model.Track;
 import com.github.felixgail.gplaymusic.model.enums.StreamQuality;
 import com.github.felixgail.gplaymusic.model.responses.SearchResponse;
+import com.olegshan.gplayalexa.api.Deadline;
+import com.olegshan.gplayalexa.api.RateLimitedException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 
 import static com.olegshan.gplayalexa.speechlet.SpeechletConstants.*;
 import static java.util.Collections.emptyList;
@@ -47,14 +54,18 @@ public class GoogleMusicSpeechletTest {
     @Mock
     private Track          trackMock;
     @Mock
+    private Track          secondTrackMock;
+    @Mock
     private Album          albumMock;
     @Mock
+    private Artist         artistMock;
+    @Mock
     private SearchResponse searchResponseMock;
 
     private static Session session;
 
-    @InjectMocks
-    private final GoogleMusicSpeechlet speechlet = new GoogleMusicSpeechlet();
+    private final Library              library   = new Library(0);
+    private final GoogleMusicSpeechlet speechlet = new GoogleMusicSpeechlet(() -> googleApiMock, library);
 
     @Before
     public void setUp() {
@@ -112,6 +123,110 @@ public class GoogleMusicSpeechletTest {
         assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
     }
 
+    @Test
+    public void singleSongRequestIsServedFromLibrary() throws Exception {
+        String songRequest = "the unforgiven metallica";
+        String streamUrl = "https://stream_url.com";
+
+        when(secondTrackMock.getStoreId())
+            .thenReturn(Optional.of("storeId"));
+        when(secondTrackMock.getTitle())
+            .thenReturn("The Unforgiven");
+        when(secondTrackMock.getArtist())
+            .thenReturn("Metallica");
+        when(secondTrackMock.getAlbum())
+            .thenReturn("Metallica");
+        library.sync(() -> singletonList(secondTrackMock));
+
+        when(trackApiMock.getTrack("storeId"))
+            .thenReturn(trackMock);
+        when(trackMock.getStreamURL(any()))
+            .thenReturn(new URL(streamUrl));
+
+        SpeechletResponse response = speechlet.onIntent(
+            buildIntentRequestEnvelope(
+                SINGLE_SONG,
+                SONG_SLOT,
+                songRequest
+            )
+        );
+
+        verify(trackApiMock, never()).search(anyString(), anyInt());
+        checkOutputSpeech(response.getOutputSpeech(), "Playing The Unforgiven by Metallica");
+
+        PlayDirective directive = (PlayDirective) response.getDirectives().get(0);
+        assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
+        assertEquals("song|storeId|0|storeId", directive.getAudioItem().getStream().getToken());
+
+        speechlet.onIntent(buildIntentRequestEnvelope(SINGLE_SONG, SONG_SLOT, songRequest));
+        verify(trackApiMock, times(1)).getTrack("storeId");
+    }
+
+    @Test
+    public void shuffleLibraryRequestPlaysLibraryTrackWithShuffleToken() throws Exception {
+        String streamUrl = "https://stream_url.com";
+
+        when(secondTrackMock.getStoreId())
+            .thenReturn(Optional.of("storeId"));
+        when(secondTrackMock.getTitle())
+            .thenReturn("The Unforgiven");
+        when(secondTrackMock.getArtist())
+            .thenReturn("Metallica");
+        library.sync(() -> singletonList(secondTrackMock));
+
+        when(trackApiMock.getTrack("storeId"))
+            .thenReturn(trackMock);
+        when(trackMock.getStreamURL(any()))
+            .thenReturn(new URL(streamUrl));
+
+        SpeechletResponse response = speechlet.onIntent(buildIntentRequestEnvelope(SHUFFLE_LIBRARY));
+
+        checkOutputSpeech(response.getOutputSpeech(), "Playing The Unforgiven by Metallica");
+
+        PlayDirective directive = (PlayDirective) response.getDirectives().get(0);
+        assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
+        assertTrue(directive.getAudioItem().getStream().getToken().startsWith("shuffle|"));
+        assertTrue(directive.getAudioItem().getStream().getToken().endsWith("|0|storeId"));
+    }
+
+    @Test
+    public void onIntentWithPlayAnythingRequestPlaysBestMatch() throws Exception {
+        String request = "the unforgiven metallica";
+        String streamUrl = "https://stream_url.com";
+
+        when(trackApiMock.search(request, GoogleMusicSpeechlet.FAN_OUT_RESULTS))
+            .thenReturn(singletonList(trackMock));
+        when(googleApiMock.search(anyString(), anyInt(), any()))
+            .thenReturn(searchResponseMock);
+        when(searchResponseMock.getAlbums())
+            .thenReturn(emptyList());
+        when(searchResponseMock.getArtists())
+            .thenReturn(emptyList());
+
+        when(trackMock.getID())
+            .thenReturn("trackId");
+        when(trackMock.getTitle())
+            .thenReturn("The Unforgiven");
+        when(trackMock.getArtist())
+            .thenReturn("Metallica");
+        when(trackMock.getStreamURL(any()))
+            .thenReturn(new URL(streamUrl));
+
+        SpeechletResponse response = speechlet.onIntent(
+            buildIntentRequestEnvelope(
+                PLAY_ANYTHING,
+                QUERY_SLOT,
+                request
+            )
+        );
+
+        verify(googleApiMock, times(2)).search(eq(request), eq(GoogleMusicSpeechlet.FAN_OUT_RESULTS), any());
+        checkOutputSpeech(response.getOutputSpeech(), "Playing The Unforgiven by Metallica");
+
+        PlayDirective directive = (PlayDirective) response.getDirectives().get(0);
+        assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
+    }
+
     @Test
     public void onIntentWithCorrectAlbumRequest() throws Exception {
         String albumRequest = "The Prodigy The Fat of the Land";
@@ -170,6 +285,130 @@ public class GoogleMusicSpeechletTest {
         assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
     }
 
+    @Test
+    public void onIntentWithArtistRequestStartsWithFirstAlbum() throws Exception {
+        String artistRequest = "Metallica";
+        String artistId = "ArtistId";
+        String albumId = "AlbumId";
+        String streamUrl = "https://stream_url.com";
+
+        when(googleApiMock.search(anyString(), anyInt(), any()))
+            .thenReturn(searchResponseMock);
+        when(searchResponseMock.getArtists())
+            .thenReturn(singletonList(artistMock));
+        when(artistMock.getArtistId())
+            .thenReturn(Optional.of(artistId));
+        when(googleApiMock.getArtist(artistId, true, 0, 0))
+            .thenReturn(artistMock);
+        when(artistMock.getName())
+            .thenReturn("Metallica");
+        when(artistMock.getAlbums())
+            .thenReturn(Optional.of(singletonList(albumMock)));
+
+        when(albumMock.getAlbumId())
+            .thenReturn(albumId);
+        when(googleApiMock.getAlbum(albumId, true))
+            .thenReturn(albumMock);
+        when(albumMock.getTracks())
+            .thenReturn(Optional.of(singletonList(trackMock)));
+
+        when(trackMock.getID())
+            .thenReturn("trackId");
+        when(trackMock.getStreamURL(any()))
+            .thenReturn(new URL(streamUrl));
+
+        SpeechletResponse response = speechlet.onIntent(
+            buildIntentRequestEnvelope(
+                ARTIST,
+                ARTIST_SLOT,
+                artistRequest
+            )
+        );
+
+        checkOutputSpeech(response.getOutputSpeech(), "Playing all albums by Metallica");
+
+        PlayDirective directive = (PlayDirective) response.getDirectives().get(0);
+        assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
+        assertEquals("discography|ArtistId|0|trackId", directive.getAudioItem().getStream().getToken());
+    }
+
+    @Test
+    public void onIntentWithPlayAnythingMatchingArtistPlaysAllAlbums() throws Exception {
+        String request = "metallica";
+        String artistId = "ArtistId";
+        String albumId = "AlbumId";
+
+        when(trackApiMock.search(request, GoogleMusicSpeechlet.FAN_OUT_RESULTS))
+            .thenReturn(emptyList());
+        when(googleApiMock.search(anyString(), anyInt(), any()))
+            .thenReturn(searchResponseMock);
+        when(searchResponseMock.getAlbums())
+            .thenReturn(emptyList());
+        when(searchResponseMock.getArtists())
+            .thenReturn(singletonList(artistMock));
+        when(artistMock.getArtistId())
+            .thenReturn(Optional.of(artistId));
+        when(artistMock.getName())
+            .thenReturn("Metallica");
+        when(googleApiMock.getArtist(artistId, true, 0, 0))
+            .thenReturn(artistMock);
+        when(artistMock.getAlbums())
+            .thenReturn(Optional.of(singletonList(albumMock)));
+        when(albumMock.getAlbumId())
+            .thenReturn(albumId);
+        when(googleApiMock.getAlbum(albumId, true))
+            .thenReturn(albumMock);
+        when(albumMock.getTracks())
+            .thenReturn(Optional.of(singletonList(trackMock)));
+        when(trackMock.getID())
+            .thenReturn("trackId");
+        when(trackMock.getStreamURL(any()))
+            .thenReturn(new URL("https://stream_url.com"));
+
+        SpeechletResponse response = speechlet.onIntent(
+            buildIntentRequestEnvelope(
+                PLAY_ANYTHING,
+                QUERY_SLOT,
+                request
+            )
+        );
+
+        checkOutputSpeech(response.getOutputSpeech(), "Playing all albums by Metallica");
+
+        PlayDirective directive = (PlayDirective) response.getDirectives().get(0);
+        assertEquals("discography|ArtistId|0|trackId", directive.getAudioItem().getStream().getToken());
+    }
+
+    @Test
+    public void repeatedSingleSongRequestIsServedFromCache() throws Exception {
+        String songRequest = "Metallica The Unforgiven";
+
+        when(trackApiMock.search(songRequest, 1))
+            .thenReturn(singletonList(trackMock));
+
+        when(trackMock.getTitle())
+            .thenReturn("The Unforgiven");
+
+        when(trackMock.getArtist())
+            .thenReturn("Metallica");
+
+        when(trackMock.getStreamURL(any()))
+            .thenReturn(new URL("https://stream_url.com"));
+
+        speechlet.onIntent(buildIntentRequestEnvelope(SINGLE_SONG, SONG_SLOT, songRequest));
+        SpeechletResponse response = speechlet.onIntent(
+            buildIntentRequestEnvelope(
+                SINGLE_SONG,
+                SONG_SLOT,
+                "metallica the unforgiven"
+            )
+        );
+
+        verify(trackApiMock).search(songRequest, 1);
+        verify(trackMock).getStreamURL(StreamQuality.HIGH);
+        checkOutputSpeech(response.getOutputSpeech(), "Playing The Unforgiven by Metallica");
+    }
+
     @Test
     public void onIntentWithNotCorrectRequest() throws Exception {
         String songRequest = "Some song that can't be found";
@@ -192,6 +431,115 @@ public class GoogleMusicSpeechletTest {
         assertNull(response.getDirectives());
     }
 
+    @Test
+    public void throttledRequestAsksToTryAgainLater() throws Exception {
+        String songRequest = "Metallica The Unforgiven";
+
+        when(trackApiMock.search(songRequest, 1))
+            .thenThrow(new RateLimitedException("GPlayMusic.searchTracks"));
+
+        SpeechletResponse response = speechlet.onIntent(
+            buildIntentRequestEnvelope(
+                SINGLE_SONG,
+                SONG_SLOT,
+                songRequest
+            )
+        );
+
+        checkOutputSpeech(response.getOutputSpeech(), BUSY);
+        assertNull(response.getDirectives());
+    }
+
+    @Test
+    public void nextIntentWaitingForSlowPrefetchPastDeadlineAsksToTryAgainLater() throws Exception {
+        String albumId = "AlbumId";
+        String streamUrl = "https://stream_url.com/second";
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(googleApiMock.search(anyString(), anyInt(), any()))
+            .thenReturn(searchResponseMock);
+        when(searchResponseMock.getAlbums())
+            .thenReturn(singletonList(albumMock));
+        when(albumMock.getAlbumId())
+            .thenReturn(albumId);
+        when(googleApiMock.getAlbum(albumId, true))
+            .thenReturn(albumMock);
+        when(albumMock.getTracks())
+            .thenReturn(Optional.of(Arrays.asList(trackMock, secondTrackMock)));
+        when(trackMock.getID())
+            .thenReturn("track1");
+        when(secondTrackMock.getID())
+            .thenReturn("track2");
+        when(secondTrackMock.getTitle())
+            .thenReturn("Second");
+        when(trackMock.getStreamURL(any()))
+            .thenReturn(new URL("https://stream_url.com/first"));
+        when(secondTrackMock.getStreamURL(any())).thenAnswer(invocation -> {
+            release.await();
+            return new URL(streamUrl);
+        });
+        speechlet.onIntent(buildIntentRequestEnvelope(ALBUM, ALBUM_SLOT, "album"));
+
+        Date lateTimestamp = new Date(System.currentTimeMillis() - Deadline.ALEXA_TIMEOUT_MILLIS + 1000);
+        SpeechletResponse busy = speechlet.onIntent(SpeechletRequestEnvelope.<IntentRequest>builder()
+            .withRequest(IntentRequest.builder()
+                .withRequestId(TEST_REQUEST_ID)
+                .withTimestamp(lateTimestamp)
+                .withIntent(Intent.builder().withName("AMAZON.NextIntent").build())
+                .build())
+            .withSession(session)
+            .build());
+        release.countDown();
+
+        checkOutputSpeech(busy.getOutputSpeech(), BUSY);
+        assertNull(busy.getDirectives());
+
+        SpeechletResponse next = speechlet.onIntent(buildIntentRequestEnvelope("AMAZON.NextIntent"));
+
+        PlayDirective directive = (PlayDirective) next.getDirectives().get(0);
+        assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
+        assertEquals(QueueToken.album(albumId, 1, "track2").encode(), directive.getAudioItem().getStream().getToken());
+        verify(secondTrackMock).getStreamURL(StreamQuality.HIGH);
+    }
+
+    @Test
+    public void onPlaybackNearlyFinishedRestoresQueueFromToken() throws Exception {
+        String albumId = "AlbumId";
+        String streamUrl = "https://stream_url.com/second";
+        String currentToken = QueueToken.album(albumId, 0, "track1").encode();
+
+        when(googleApiMock.getAlbum(albumId, true))
+            .thenReturn(albumMock);
+
+        when(albumMock.getTracks())
+            .thenReturn(Optional.of(Arrays.asList(trackMock, secondTrackMock)));
+
+        when(trackMock.getID())
+            .thenReturn("track1");
+
+        when(secondTrackMock.getID())
+            .thenReturn("track2");
+
+        when(secondTrackMock.getStreamURL(any()))
+            .thenReturn(new URL(streamUrl));
+
+        SpeechletResponse response = speechlet.onPlaybackNearlyFinished(buildPlaybackNearlyFinishedEnvelope(currentToken));
+
+        verify(googleApiMock).getAlbum(albumId, true);
+        verify(secondTrackMock).getStreamURL(StreamQuality.HIGH);
+        verify(trackMock, never()).getStreamURL(any());
+
+        assertNotNull(response.getDirectives());
+        assertEquals(1, response.getDirectives().size());
+        assertTrue(response.getDirectives().get(0) instanceof PlayDirective);
+
+        PlayDirective directive = (PlayDirective) response.getDirectives().get(0);
+        assertEquals(PlayBehavior.ENQUEUE, directive.getPlayBehavior());
+        assertEquals(streamUrl, directive.getAudioItem().getStream().getUrl());
+        assertEquals(currentToken, directive.getAudioItem().getStream().getExpectedPreviousToken());
+        assertEquals(QueueToken.album(albumId, 1, "track2").encode(), directive.getAudioItem().getStream().getToken());
+    }
+
     @Test
     public void testStopIntent() {
         SpeechletResponse response = speechlet.onIntent(buildIntentRequestEnvelope("AMAZON.StopIntent"));
@@ -232,6 +580,15 @@ public class GoogleMusicSpeechletTest {
             .build();
     }
 
+    private SpeechletRequestEnvelope<PlaybackNearlyFinishedRequest> buildPlaybackNearlyFinishedEnvelope(String token) {
+        return SpeechletRequestEnvelope.<PlaybackNearlyFinishedRequest>builder()
+            .withRequest(PlaybackNearlyFinishedRequest.builder()
+                .withRequestId(TEST_REQUEST_ID)
+                .withToken(token)
+                .build())
+            .build();
+    }
+
     private SpeechletRequestEnvelope<IntentRequest> buildIntentRequestEnvelope(String intentName) {
         return buildIntentRequestEnvelope(intentName, "NoMatter", "NoMatter");
     }
@@ -0,0 +1,80 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LibraryIndexTest {
+    private final List<Track> tracks = new ArrayList<>(Arrays.asList(
+        track("T1", "The Unforgiven", "Metallica", "Metallica"),
+        track("T2", "The Unforgiven II", "Metallica", "Reload"),
+        track("T3", "Enter Sandman", "Metallica", "Metallica"),
+        track("T4", "Breathe", "The Prodigy", "The Fat of the Land"),
+        track(null, "Demo", "Uploaded", "Uploaded")
+    ));
+
+    private final LibraryIndex index = LibraryIndex.build(tracks);
+
+    @Test
+    public void onlyStoreTracksAreIndexed() {
+        assertEquals(4, index.size());
+        assertNull(index.find("demo uploaded"));
+    }
+
+    @Test
+    public void exactTitleAndArtistWin() {
+        SearchMatch match = index.find("the unforgiven metallica");
+
+        assertEquals("T1", match.id());
+        assertEquals("The Unforgiven", match.title());
+        assertEquals("Metallica", match.artist());
+        assertEquals(1.0, match.score(), 0.001);
+    }
+
+    @Test
+    public void completelySpokenTitleIsPreferred() {
+        assertEquals("T2", index.find("the unforgiven ii").id());
+        assertEquals("T1", index.find("unforgiven").id());
+    }
+
+    @Test
+    public void misrecognizedWordsStillMatch() {
+        assertEquals("T3", index.find("enter sandmen by metalica").id());
+    }
+
+    @Test
+    public void artistOrAlbumAloneIsNotATrackMatch() {
+        assertNull(index.find("metallica"));
+        assertNull(index.find("the fat of the land"));
+        assertNull(index.find("nirvana"));
+        assertNull(LibraryIndex.EMPTY.find("the unforgiven"));
+    }
+
+    @Test
+    public void unchangedLibraryKeepsIndex() {
+        assertSame(index, index.update(tracks));
+
+        tracks.add(track("T5", "Firestarter", "The Prodigy", "The Fat of the Land"));
+        LibraryIndex updated = index.update(tracks);
+
+        assertNotSame(index, updated);
+        assertEquals("T5", updated.find("firestarter").id());
+    }
+
+    private static Track track(String storeId, String title, String artist, String album) {
+        Track track = mock(Track.class);
+        when(track.getStoreId()).thenReturn(Optional.ofNullable(storeId));
+        when(track.getTitle()).thenReturn(title);
+        when(track.getArtist()).thenReturn(artist);
+        when(track.getAlbum()).thenReturn(album);
+        return track;
+    }
+}
@@ -0,0 +1,104 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+public class SearchResultCacheTest {
+    private static final long TTL = 1000L;
+
+    private SearchResultCache<String> cache;
+    private long                      now;
+    private int                       searches;
+
+    @Before
+    public void setUp() {
+        cache = new SearchResultCache<>("Test", () -> now, 2, TTL);
+        now = 0;
+        searches = 0;
+    }
+
+    @Test
+    public void queriesAreNormalized() {
+        assertEquals("metallica the unforgiven", SearchResultCache.normalize("  Metallica -  The Unforgiven! "));
+        assertEquals("ac dc back in black", SearchResultCache.normalize("AC/DC Back in Black"));
+    }
+
+    @Test
+    public void repeatedQueryIsServedFromCache() throws Exception {
+        assertEquals(singletonList("Metallica The Unforgiven"), cache.get("Metallica The Unforgiven", this::search));
+        assertEquals(singletonList("Metallica The Unforgiven"), cache.get("metallica the unforgiven", this::search));
+
+        assertEquals(1, searches);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void expiredResultIsSearchedAgain() throws Exception {
+        cache.get("Metallica The Unforgiven", this::search);
+        now += TTL;
+        cache.get("Metallica The Unforgiven", this::search);
+
+        assertEquals(2, searches);
+        assertEquals(1, cache.expirations());
+    }
+
+    @Test
+    public void expiredResultIsServedWhenSearchFails() throws Exception {
+        cache.get("Metallica The Unforgiven", this::search);
+        now += TTL;
+
+        List<String> result = cache.get("Metallica The Unforgiven", query -> {
+            throw new IOException("Rate limit exceeded");
+        });
+
+        assertEquals(singletonList("Metallica The Unforgiven"), result);
+        assertEquals(1, cache.staleHits());
+    }
+
+    @Test(expected = IOException.class)
+    public void failedSearchIsRethrownWithoutCachedResult() throws Exception {
+        cache.get("Metallica The Unforgiven", query -> {
+            throw new IOException("Rate limit exceeded");
+        });
+    }
+
+    @Test
+    public void leastRecentlyUsedResultIsEvicted() throws Exception {
+        cache.get("first", this::search);
+        cache.get("second", this::search);
+        cache.get("first", this::search);
+        cache.get("third", this::search);
+        cache.get("first", this::search);
+        cache.get("second", this::search);
+
+        assertEquals(4, searches);
+        assertEquals(2, cache.evictions());
+    }
+
+    @Test
+    public void emptyResultIsNotCached() throws Exception {
+        cache.get("", query -> {
+            searches++;
+            return emptyList();
+        });
+        cache.get("", query -> {
+            searches++;
+            return emptyList();
+        });
+
+        assertEquals(2, searches);
+    }
+
+    private List<String> search(String query) {
+        searches++;
+        return singletonList(query);
+    }
+}
@@ -0,0 +1,93 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class SessionRegistryTest {
+    private static final long IDLE_TIMEOUT = 1000L;
+
+    private final List<String> evicted = new ArrayList<>();
+
+    private SessionRegistry registry;
+    private long            now;
+
+    @Before
+    public void setUp() {
+        now = 0;
+        registry = new SessionRegistry(() -> now, 2, IDLE_TIMEOUT, session -> evicted.add(session.key()));
+    }
+
+    @Test
+    public void sameKeyReturnsSameSession() {
+        PlaybackSession kitchen = registry.get("kitchen");
+
+        assertSame(kitchen, registry.get("kitchen"));
+        assertNotSame(kitchen, registry.get("bedroom"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void idleSessionsAreEvicted() {
+        registry.get("kitchen");
+        now += IDLE_TIMEOUT / 2;
+        registry.get("bedroom");
+        now += IDLE_TIMEOUT / 2;
+
+        registry.evictIdle(now);
+
+        assertEquals(asList("kitchen"), evicted);
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedSessionIsEvictedAboveLimit() {
+        registry.get("kitchen");
+        now++;
+        registry.get("bedroom");
+        now++;
+        registry.get("kitchen");
+        now++;
+        registry.get("bathroom");
+
+        assertEquals(asList("bedroom"), evicted);
+        assertEquals(2, registry.size());
+        assertEquals(1, registry.evictions());
+    }
+
+    @Test
+    public void concurrentDevicesGetTheirOwnSessions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        SessionRegistry registry = new SessionRegistry(() -> now, 10, IDLE_TIMEOUT, session -> { });
+
+        for (int device = 0; device < 4; device++) {
+            String key = "device" + device;
+            int position = device;
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    PlaybackSession session = registry.get(key);
+                    synchronized (session) {
+                        session.moveTo(position);
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        for (int device = 0; device < 4; device++)
+            assertEquals(device, registry.get("device" + device).currentTrack());
+    }
+}
@@ -0,0 +1,94 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ShuffledQueueTest {
+
+    @Test
+    public void everyTrackIsPlayedExactlyOnce() {
+        for (int size : new int[]{1, 2, 3, 7, 100, 1000, 1025}) {
+            ShuffledQueue shuffled = new ShuffledQueue(queue(size), 42);
+            Set<String> played = new HashSet<>();
+            for (int i = 0; i < size; i++)
+                assertTrue(played.add(shuffled.trackId(i)));
+            assertEquals(size, played.size());
+        }
+    }
+
+    @Test
+    public void orderIsRestoredFromSeed() {
+        TrackQueue tracks = queue(500);
+        ShuffledQueue shuffled = new ShuffledQueue(tracks, 0xCAFEL);
+        ShuffledQueue restored = new ShuffledQueue(tracks, ShuffledQueue.seed(shuffled.queueId()));
+
+        for (int i = 0; i < tracks.size(); i++)
+            assertEquals(shuffled.trackId(i), restored.trackId(i));
+    }
+
+    @Test
+    public void differentSeedsGiveDifferentOrders() {
+        TrackQueue tracks = queue(500);
+        ShuffledQueue first = new ShuffledQueue(tracks, 1);
+        ShuffledQueue second = new ShuffledQueue(tracks, 2);
+
+        int samePositions = 0;
+        for (int i = 0; i < tracks.size(); i++) {
+            if (first.trackId(i).equals(second.trackId(i)))
+                samePositions++;
+        }
+        assertTrue(samePositions < 50);
+    }
+
+    @Test
+    public void trackIsFoundAfterLibraryChanges() {
+        ShuffledQueue shuffled = new ShuffledQueue(queue(100), -7);
+        String trackId = shuffled.trackId(10);
+        ShuffledQueue synced = new ShuffledQueue(queue(120), -7);
+
+        assertEquals(trackId, synced.trackId(synced.indexOf(trackId, 10)));
+    }
+
+    private static TrackQueue queue(int size) {
+        return new TrackQueue() {
+            @Override
+            String queueId() {
+                return "library";
+            }
+
+            @Override
+            String name() {
+                return "library";
+            }
+
+            @Override
+            String artist() {
+                return "various artists";
+            }
+
+            @Override
+            int size() {
+                return size;
+            }
+
+            @Override
+            String trackId(int index) {
+                return "T" + index;
+            }
+
+            @Override
+            String title(int index) {
+                return "Title " + index;
+            }
+
+            @Override
+            String artist(int index) {
+                return "Artist " + index;
+            }
+        };
+    }
+}
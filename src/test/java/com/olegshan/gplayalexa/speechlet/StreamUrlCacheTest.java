@@ -0,0 +1,237 @@
+package com.olegshan.gplayalexa.speechlet;
+
+import com.github.felixgail.gplaymusic.model.Track;
+import com.github.felixgail.gplaymusic.model.enums.StreamQuality;
+import com.olegshan.gplayalexa.api.Deadline;
+import com.olegshan.gplayalexa.api.DeadlineExceededException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StreamUrlCacheTest {
+    private static final String FIRST_URL  = "https://stream_url.com/first";
+    private static final String SECOND_URL = "https://stream_url.com/second";
+
+    @Mock
+    private Track firstTrack;
+    @Mock
+    private Track secondTrack;
+
+    private final Map<String, Track> tracks = new HashMap<>();
+
+    private StreamUrlCache cache;
+    private long           now = 1_000_000L;
+
+    @Before
+    public void setUp() {
+        cache = new StreamUrlCache(Executors.newSingleThreadScheduledExecutor(), () -> now, tracks::get, 1, 4);
+    }
+
+    @Test
+    public void prefetchedUrlIsServedFromCache() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+
+        cache.prefetch(album(firstTrack), 0);
+
+        assertEquals(FIRST_URL, cache.get("first"));
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+
+        verify(firstTrack).getStreamURL(StreamQuality.HIGH);
+        assertEquals(2, cache.hits());
+        assertEquals(0, cache.misses());
+    }
+
+    @Test
+    public void notPrefetchedUrlIsResolvedOnRequest() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+
+        verify(firstTrack).getStreamURL(StreamQuality.HIGH);
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void prefetchIsLimitedByDepth() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+        stubTrack(secondTrack, "second", SECOND_URL);
+
+        cache.prefetch(album(firstTrack, secondTrack), 0);
+
+        assertEquals(FIRST_URL, cache.get("first"));
+        assertEquals(SECOND_URL, cache.get("second"));
+
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void slowPrefetchFailsFastAndStaysInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        tracks.put("first", firstTrack);
+        when(firstTrack.getID()).thenReturn("first");
+        when(firstTrack.getStreamURL(any())).thenAnswer(invocation -> {
+            release.await();
+            return new URL(FIRST_URL);
+        });
+        cache.prefetch(album(firstTrack), 0);
+
+        try (Deadline.Scope ignored = Deadline.after(50).enter()) {
+            cache.get("first");
+            fail("Request must not wait for the prefetch past its deadline");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+        release.countDown();
+
+        assertEquals(FIRST_URL, cache.get("first"));
+        verify(firstTrack).getStreamURL(StreamQuality.HIGH);
+        assertEquals(1, cache.hits());
+        assertEquals(0, cache.misses());
+    }
+
+    @Test
+    public void expiryIsParsedFromStreamUrl() {
+        assertEquals(1_561_234_567_000L, StreamUrlCache.parseExpiry("https://stream_url.com/?id=1&expire=1561234567&sig=x", now));
+        assertEquals(now + StreamUrlCache.DEFAULT_TTL_MILLIS, StreamUrlCache.parseExpiry(FIRST_URL, now));
+    }
+
+    @Test
+    public void urlIsResolvedAgainBeforeItExpires() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+
+        now += StreamUrlCache.DEFAULT_TTL_MILLIS - StreamUrlCache.EXPIRY_MARGIN_MILLIS;
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+
+        verify(firstTrack, times(2)).getStreamURL(StreamQuality.HIGH);
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.expirations());
+    }
+
+    @Test
+    public void expiringUrlIsServedWhenResolvingItAgainFails() throws Exception {
+        when(firstTrack.getID()).thenReturn("first");
+        when(firstTrack.getStreamURL(any()))
+            .thenReturn(new URL(FIRST_URL))
+            .thenThrow(new IOException("Rate limit exceeded"));
+
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+
+        now += StreamUrlCache.DEFAULT_TTL_MILLIS - StreamUrlCache.EXPIRY_MARGIN_MILLIS;
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+        assertEquals(2, cache.staleHits());
+
+        now += StreamUrlCache.EXPIRY_MARGIN_MILLIS;
+        try {
+            cache.get(firstTrack);
+            fail("Expired url must not be served");
+        } catch (RuntimeException e) {
+            assertEquals(2, cache.staleHits());
+        }
+    }
+
+    @Test
+    public void queuedUrlIsRefreshedInBackground() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+
+        cache.queue("session", album(firstTrack));
+        assertEquals(FIRST_URL, cache.get("first"));
+
+        now += StreamUrlCache.DEFAULT_TTL_MILLIS / 2;
+        cache.refreshExpiring();
+
+        awaitRefreshes(1);
+
+        verify(firstTrack, times(2)).getStreamURL(StreamQuality.HIGH);
+        now += StreamUrlCache.DEFAULT_TTL_MILLIS / 4;
+        assertEquals(FIRST_URL, cache.get("first"));
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void notQueuedUrlIsNotRefreshed() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+
+        cache.queue("session", album(firstTrack));
+        cache.dequeue("session");
+        assertEquals(FIRST_URL, cache.get(firstTrack));
+
+        now += StreamUrlCache.DEFAULT_TTL_MILLIS / 2;
+        cache.refreshExpiring();
+
+        verify(firstTrack).getStreamURL(StreamQuality.HIGH);
+    }
+
+    @Test
+    public void freshUrlIsNotRefreshed() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+
+        cache.queue("session", album(firstTrack));
+        assertEquals(FIRST_URL, cache.get("first"));
+
+        now += SECONDS.toMillis(StreamUrlCache.REFRESH_PERIOD_SECONDS);
+        cache.refreshExpiring();
+
+        verify(firstTrack).getStreamURL(StreamQuality.HIGH);
+        assertEquals(0, cache.refreshes());
+    }
+
+    @Test
+    public void idleQueueStopsRefreshing() throws Exception {
+        stubTrack(firstTrack, "first", FIRST_URL);
+
+        cache.queue("session", album(firstTrack));
+        assertEquals(FIRST_URL, cache.get("first"));
+        now += StreamUrlCache.DEFAULT_TTL_MILLIS / 2;
+        cache.refreshExpiring();
+        awaitRefreshes(1);
+
+        cache.dequeue("session");
+        for (int i = 0; i < 4; i++) {
+            now += StreamUrlCache.DEFAULT_TTL_MILLIS / 2;
+            cache.refreshExpiring();
+        }
+
+        verify(firstTrack, times(2)).getStreamURL(StreamQuality.HIGH);
+        assertEquals(1, cache.refreshes());
+    }
+
+    private void stubTrack(Track track, String id, String url) throws Exception {
+        tracks.put(id, track);
+        when(track.getID()).thenReturn(id);
+        when(track.getStreamURL(any())).thenReturn(new URL(url));
+    }
+
+    private AlbumTracks album(Track... albumTracks) {
+        return AlbumTracks.of("albumId", "Album", "Artist", Arrays.asList(albumTracks));
+    }
+
+    private void awaitRefreshes(long expected) throws InterruptedException {
+        for (int i = 0; i < 100 && cache.refreshes() < expected; i++)
+            Thread.sleep(10);
+        assertEquals(expected, cache.refreshes());
+    }
+}
@@ -0,0 +1,106 @@
+package com.olegshan.gplayalexa.trace;
+
+import com.olegshan.gplayalexa.metrics.Metrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.*;
+
+public class TraceRecorderTest {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempDirectory("trace").resolve("trace.bin");
+    }
+
+    @Test
+    public void recordsAreReadBackInOrder() throws IOException {
+        TraceRecorder recorder = new TraceRecorder(file, Metrics.metrics());
+
+        long requestId = recorder.request(bytes("{\"request\":1}"));
+        recorder.upstream("GET", "https://mclients.googleapis.com/sj/v2.5/fetchalbum?nid=B1", 200,
+            new String[]{"Content-Type", "application/json"}, MILLISECONDS.toNanos(40), bytes("{\"name\":\"Album\"}"));
+        recorder.response(requestId, System.nanoTime(), bytes("{\"response\":1}"));
+        recorder.close();
+
+        List<TraceRecord> records = TraceReader.readAll(file);
+        assertEquals(3, records.size());
+        assertEquals(TraceRecord.Type.REQUEST, records.get(0).type);
+        assertEquals(requestId, records.get(0).requestId);
+        assertArrayEquals(bytes("{\"request\":1}"), records.get(0).body);
+
+        TraceRecord upstream = records.get(1);
+        assertEquals(TraceRecord.Type.UPSTREAM, upstream.type);
+        assertEquals("GET", upstream.method);
+        assertEquals("https://mclients.googleapis.com/sj/v2.5/fetchalbum?nid=B1", upstream.url);
+        assertEquals(200, upstream.status);
+        assertEquals("application/json", upstream.header("content-type"));
+        assertEquals(40_000, upstream.latencyMicros);
+        assertArrayEquals(bytes("{\"name\":\"Album\"}"), upstream.body);
+
+        assertEquals(TraceRecord.Type.RESPONSE, records.get(2).type);
+        assertEquals(requestId, records.get(2).requestId);
+        assertArrayEquals(bytes("{\"response\":1}"), records.get(2).body);
+        assertTrue(records.get(0).timestampMicros <= records.get(2).timestampMicros);
+    }
+
+    @Test
+    public void reopenedTraceIsAppendedTo() throws IOException {
+        TraceRecorder first = new TraceRecorder(file, Metrics.metrics());
+        first.response(first.request(bytes("first")), System.nanoTime(), bytes("first"));
+        first.close();
+        TraceRecorder second = new TraceRecorder(file, Metrics.metrics());
+        second.response(second.request(bytes("second")), System.nanoTime(), bytes("second"));
+        second.close();
+
+        List<TraceRecord> records = TraceReader.readAll(file);
+        assertEquals(4, records.size());
+        assertArrayEquals(bytes("first"), records.get(0).body);
+        assertArrayEquals(bytes("second"), records.get(3).body);
+        assertNotEquals(records.get(0).requestId, records.get(2).requestId);
+    }
+
+    @Test
+    public void truncatedRecordAtTheEndIsIgnored() throws IOException {
+        TraceRecorder recorder = new TraceRecorder(file, Metrics.metrics());
+        recorder.response(recorder.request(bytes("complete")), System.nanoTime(), bytes("complete"));
+        recorder.close();
+        byte[] trace = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(trace, trace.length - 3));
+
+        List<TraceRecord> records = TraceReader.readAll(file);
+
+        assertEquals(1, records.size());
+        assertEquals(TraceRecord.Type.REQUEST, records.get(0).type);
+    }
+
+    @Test
+    public void disabledRecorderWritesNothing() {
+        TraceRecorder recorder = new TraceRecorder();
+
+        assertFalse(recorder.isEnabled());
+        assertEquals(-1, recorder.request(bytes("request")));
+        recorder.response(-1, System.nanoTime(), bytes("response"));
+        assertEquals(0, recorder.records());
+    }
+
+    @Test(expected = IOException.class)
+    public void foreignFileIsNotAppendedTo() throws IOException {
+        Files.write(file, bytes("not a trace"));
+
+        new TraceRecorder(file, Metrics.metrics());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}